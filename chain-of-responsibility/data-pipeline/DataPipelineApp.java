@@ -1,3 +1,40 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
 // Chain of Responsibility Pattern - Data Filter
 abstract class DataFilter {
     protected DataFilter nextFilter;
@@ -16,21 +53,64 @@ abstract class DataFilter {
     }
 
     protected abstract String applyFilter(String data);
+
+    // Hooks used by StreamingDataPipeline to fuse character-level filters into one pass.
+    // A char-mapping filter returns the replacement char, or -1 to drop it. mapChar only has
+    // to match applyFilter for ASCII input; records with other chars are filtered unfused.
+    protected boolean isCharMapping() {
+        return false;
+    }
+
+    protected int mapChar(char c) {
+        return c;
+    }
+
+    protected boolean isTrimming() {
+        return false;
+    }
 }
 
 // Concrete Filter Classes
 class RemovePunctuationFilter extends DataFilter {
+    private static final Pattern PUNCTUATION = Pattern.compile("[\\p{Punct}]");
+    private static final String PUNCTUATION_CHARS = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+
     @Override
     protected String applyFilter(String data) {
-        return data.replaceAll("[\\p{Punct}]", "");
+        return PUNCTUATION.matcher(data).replaceAll("");
+    }
+
+    @Override
+    protected boolean isCharMapping() {
+        return true;
+    }
+
+    @Override
+    protected int mapChar(char c) {
+        // \p{Punct} is ASCII-only, so a table lookup matches the regex exactly
+        return c < 128 && PUNCTUATION_CHARS.indexOf(c) >= 0 ? -1 : c;
     }
 }
 
 class LowercaseFilter extends DataFilter {
+    // Under locales such as Turkish even ASCII 'I' does not lowercase to 'i'
+    private final boolean asciiLowercase = "I".toLowerCase().equals("i");
+
     @Override
     protected String applyFilter(String data) {
         return data.toLowerCase();
     }
+
+    @Override
+    protected boolean isCharMapping() {
+        return asciiLowercase;
+    }
+
+    // Only called for ASCII records; anything else goes through applyFilter
+    @Override
+    protected int mapChar(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
 }
 
 class TrimWhitespaceFilter extends DataFilter {
@@ -38,11 +118,451 @@ class TrimWhitespaceFilter extends DataFilter {
     protected String applyFilter(String data) {
         return data.trim();
     }
+
+    @Override
+    protected boolean isTrimming() {
+        return true;
+    }
+}
+
+// Streaming Mode - batch processing of records through a filter chain
+interface DataSink {
+    // The record is only valid for the duration of the call; copy it to keep it.
+    void accept(CharSequence record);
+}
+
+class StreamingDataPipeline {
+    // A run of adjacent char-mapping filters, optionally followed by a trim, or a single non-fusable filter
+    private static class Stage {
+        final DataFilter[] mappers;
+        final DataFilter trimmer;
+        final DataFilter fallback;
+
+        Stage(DataFilter[] mappers, DataFilter trimmer, DataFilter fallback) {
+            this.mappers = mappers;
+            this.trimmer = trimmer;
+            this.fallback = fallback;
+        }
+    }
+
+    private final Stage[] stages;
+    private char[] buffer = new char[256];
+    private CharBuffer view = CharBuffer.wrap(buffer);
+    private int start;
+    private int end;
+
+    // Not thread-safe: the char buffer is reused across records.
+    public StreamingDataPipeline(DataFilter head) {
+        List<Stage> compiled = new ArrayList<>();
+        List<DataFilter> mappers = new ArrayList<>();
+        for (DataFilter filter = head; filter != null; filter = filter.nextFilter) {
+            if (filter.isCharMapping()) {
+                mappers.add(filter);
+            } else if (filter.isTrimming()) {
+                compiled.add(new Stage(mappers.toArray(new DataFilter[0]), filter, null));
+                mappers.clear();
+            } else {
+                if (!mappers.isEmpty()) {
+                    compiled.add(new Stage(mappers.toArray(new DataFilter[0]), null, null));
+                    mappers.clear();
+                }
+                compiled.add(new Stage(null, null, filter));
+            }
+        }
+        if (!mappers.isEmpty()) {
+            compiled.add(new Stage(mappers.toArray(new DataFilter[0]), null, null));
+        }
+        this.stages = compiled.toArray(new Stage[0]);
+    }
+
+    public void process(Stream<? extends CharSequence> records, DataSink sink) {
+        process(records.iterator(), sink);
+    }
+
+    public void process(Iterator<? extends CharSequence> records, DataSink sink) {
+        while (records.hasNext()) {
+            load(records.next());
+            for (Stage stage : stages) {
+                if (stage.fallback != null) {
+                    load(stage.fallback.applyFilter(new String(buffer, start, end - start)));
+                } else {
+                    runFused(stage);
+                }
+            }
+            view.clear();
+            view.limit(end).position(start);
+            sink.accept(view);
+        }
+    }
+
+    private void load(CharSequence record) {
+        int length = record.length();
+        if (length > buffer.length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+            view = CharBuffer.wrap(buffer);
+        }
+        if (record instanceof String) {
+            ((String) record).getChars(0, length, buffer, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                buffer[i] = record.charAt(i);
+            }
+        }
+        start = 0;
+        end = length;
+    }
+
+    // Applies every mapper to each char in one in-place pass; filters only drop chars, so writes never overtake reads
+    private void runFused(Stage stage) {
+        DataFilter[] mappers = stage.mappers;
+        for (int i = start; i < end; i++) {
+            // Non-ASCII case mappings can change length or span surrogate pairs
+            if (buffer[i] >= 128) {
+                runUnfused(stage);
+                return;
+            }
+        }
+        int write = start;
+        for (int read = start; read < end; read++) {
+            int c = buffer[read];
+            for (int m = 0; m < mappers.length && c >= 0; m++) {
+                c = mappers[m].mapChar((char) c);
+            }
+            if (c >= 0) {
+                buffer[write++] = (char) c;
+            }
+        }
+        end = write;
+        if (stage.trimmer != null) {
+            // Same definition of whitespace as String.trim()
+            while (start < end && buffer[start] <= ' ') {
+                start++;
+            }
+            while (end > start && buffer[end - 1] <= ' ') {
+                end--;
+            }
+        }
+    }
+
+    private void runUnfused(Stage stage) {
+        String data = new String(buffer, start, end - start);
+        for (DataFilter mapper : stage.mappers) {
+            data = mapper.applyFilter(data);
+        }
+        if (stage.trimmer != null) {
+            data = stage.trimmer.applyFilter(data);
+        }
+        load(data);
+    }
+}
+
+// Parallel Mode - chunked, order-preserving execution of a filter chain on many cores
+interface ChunkStatsListener {
+    void onChunk(long chunkIndex, int records, long elapsedNanos);
+}
+
+class ParallelDataPipeline implements AutoCloseable {
+    private static class ChunkResult {
+        final long index;
+        final String[] records;
+        final long elapsedNanos;
+
+        ChunkResult(long index, String[] records, long elapsedNanos) {
+            this.index = index;
+            this.records = records;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    private final DataFilter head;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+    private ChunkStatsListener statsListener = (chunkIndex, records, elapsedNanos) -> { };
+
+    // Filters are stateless, so all workers share the chain; each chunk gets its own StreamingDataPipeline.
+    public ParallelDataPipeline(DataFilter head, int parallelism, int chunkSize, int maxInFlight) {
+        if (parallelism < 1 || chunkSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("parallelism, chunkSize and maxInFlight must be positive");
+        }
+        this.head = head;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+        this.executor = new ForkJoinPool(parallelism);
+    }
+
+    public void setStatsListener(ChunkStatsListener statsListener) {
+        this.statsListener = statsListener;
+    }
+
+    public void process(Path file, DataSink sink) throws IOException {
+        try (Stream<String> lines = Files.lines(file)) {
+            process(lines.iterator(), sink);
+        }
+    }
+
+    // Results reach the sink in input order; at most maxInFlight chunks are held in memory at once.
+    public void process(Iterator<? extends CharSequence> records, DataSink sink) {
+        ArrayDeque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+        long chunkIndex = 0;
+        while (records.hasNext()) {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            while (chunk.size() < chunkSize && records.hasNext()) {
+                chunk.add(records.next().toString());
+            }
+            if (inFlight.size() == maxInFlight) {
+                emit(inFlight.poll(), sink);
+            }
+            long index = chunkIndex++;
+            inFlight.add(executor.submit(() -> runChunk(index, chunk)));
+        }
+        while (!inFlight.isEmpty()) {
+            emit(inFlight.poll(), sink);
+        }
+    }
+
+    private ChunkResult runChunk(long index, List<String> chunk) {
+        long startNanos = System.nanoTime();
+        String[] output = new String[chunk.size()];
+        int[] position = {0};
+        new StreamingDataPipeline(head).process(chunk.iterator(), record -> output[position[0]++] = record.toString());
+        return new ChunkResult(index, output, System.nanoTime() - startNanos);
+    }
+
+    private void emit(Future<ChunkResult> future, DataSink sink) {
+        ChunkResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for chunk", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Chunk processing failed", e.getCause());
+        }
+        for (String record : result.records) {
+            sink.accept(record);
+        }
+        statsListener.onChunk(result.index, result.records.length, result.elapsedNanos);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
+
+// File Stages - memory-mapped source and gathering-write sink for newline-delimited files
+class MappedFileSource implements Iterator<CharSequence>, AutoCloseable {
+    private static final long DEFAULT_WINDOW_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+    private final CharsetDecoder decoder;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private CharBuffer line = CharBuffer.allocate(256);
+
+    public MappedFileSource(Path file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE, StandardCharsets.UTF_8);
+    }
+
+    // Files of any size are read through windows of at most windowSize bytes that slide forward line by line.
+    // Lines are found by scanning raw bytes for '\n', so the charset must encode ASCII as itself (UTF-8,
+    // ISO-8859-x, ...); UTF-16, UTF-32 and EBCDIC charsets are rejected.
+    public MappedFileSource(Path file, long windowSize, Charset charset) throws IOException {
+        if (windowSize < 1 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("windowSize must be between 1 and " + Integer.MAX_VALUE);
+        }
+        if (!isAsciiCompatible(charset)) {
+            throw new IllegalArgumentException(charset + " is not ASCII-compatible, so lines cannot be split on raw bytes");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return Arrays.equals(new String(ascii, StandardCharsets.US_ASCII).getBytes(charset), ascii);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < size;
+    }
+
+    // The returned line is reused by the next call; copy it to keep it.
+    @Override
+    public CharSequence next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            long lineEnd = findLineEnd();
+            long contentEnd = lineEnd;
+            if (contentEnd > position && window.get((int) (contentEnd - 1 - windowStart)) == '\r') {
+                contentEnd--;
+            }
+            decode((int) (position - windowStart), (int) (contentEnd - windowStart));
+            position = lineEnd + 1;
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Returns the file offset of the next '\n' (or end of file), remapping so the whole line sits in the window
+    private long findLineEnd() throws IOException {
+        long mapLength = windowSize;
+        if (window == null || position >= windowStart + window.limit()) {
+            map(position, mapLength);
+        }
+        int from = (int) (position - windowStart);
+        while (true) {
+            int limit = window.limit();
+            for (int i = from; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    return windowStart + i;
+                }
+            }
+            if (windowStart + limit == size) {
+                return size;
+            }
+            if (windowStart == position) {
+                if (mapLength == Integer.MAX_VALUE) {
+                    throw new IOException("Line longer than " + Integer.MAX_VALUE + " bytes at offset " + position);
+                }
+                mapLength = Math.min(mapLength * 2, Integer.MAX_VALUE);
+            }
+            from = limit - (int) (position - windowStart);
+            map(position, mapLength);
+        }
+    }
+
+    private void map(long start, long length) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, size - start));
+    }
+
+    private void decode(int from, int to) {
+        int capacity = (int) Math.ceil((to - from) * (double) decoder.maxCharsPerByte());
+        if (line.capacity() < capacity) {
+            line = CharBuffer.allocate(Math.max(capacity, line.capacity() * 2));
+        }
+        line.clear();
+        window.limit(to).position(from);
+        decoder.reset();
+        decoder.decode(window, line, true);
+        decoder.flush(line);
+        line.flip();
+        window.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
+
+class GatheringFileSink implements DataSink, AutoCloseable {
+    private static final int BUFFER_COUNT = 16;
+    private static final int BUFFER_SIZE = 64 << 10;
+
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer[] buffers = new ByteBuffer[BUFFER_COUNT];
+    private final CharBuffer newline = CharBuffer.wrap("\n");
+    private int current;
+
+    public GatheringFileSink(Path file) throws IOException {
+        this(file, StandardCharsets.UTF_8);
+    }
+
+    public GatheringFileSink(Path file, Charset charset) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    }
+
+    @Override
+    public void accept(CharSequence record) {
+        CharBuffer chars = record instanceof CharBuffer ? (CharBuffer) record : CharBuffer.wrap(record);
+        int mark = chars.position();
+        try {
+            encode(chars);
+            newline.rewind();
+            encode(newline);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            chars.position(mark);
+        }
+    }
+
+    // Encodes into the buffer ring, moving to the next buffer on overflow and gather-writing once all are full
+    private void encode(CharBuffer chars) throws IOException {
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffers[current], true);
+            if (!result.isOverflow()) {
+                break;
+            }
+            if (++current == BUFFER_COUNT) {
+                flush();
+            }
+        }
+    }
+
+    public void flush() throws IOException {
+        int count = Math.min(current + 1, BUFFER_COUNT);
+        for (int i = 0; i < count; i++) {
+            buffers[i].flip();
+        }
+        long remaining = 0;
+        for (int i = 0; i < count; i++) {
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers, 0, count);
+        }
+        for (int i = 0; i < count; i++) {
+            buffers[i].clear();
+        }
+        current = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
 }
 
 // Decorator Pattern - Data Enrichment
 interface DataEnricher {
     String enrich(String data);
+
+    // Appends the enriched record to a caller-supplied buffer (e.g. a reused StringBuilder or CharBuffer).
+    default void enrichTo(CharSequence data, Appendable out) throws IOException {
+        out.append(enrich(data.toString()));
+    }
 }
 
 // Base Decorator Class
@@ -51,11 +571,44 @@ class BaseDataEnricher implements DataEnricher {
     public String enrich(String data) {
         return data;
     }
+
+    @Override
+    public void enrichTo(CharSequence data, Appendable out) throws IOException {
+        out.append(data);
+    }
+}
+
+// Renders System.currentTimeMillis() once per millisecond and shares the text across records
+class CachedTimestamp {
+    private static class Entry {
+        final long millis;
+        final String text;
+
+        Entry(long millis) {
+            this.millis = millis;
+            this.text = Long.toString(millis);
+        }
+    }
+
+    private volatile Entry current = new Entry(System.currentTimeMillis());
+
+    public CharSequence now() {
+        long millis = System.currentTimeMillis();
+        Entry entry = current;
+        if (entry.millis != millis) {
+            entry = new Entry(millis);
+            current = entry;
+        }
+        return entry.text;
+    }
 }
 
 // Concrete Decorators
 class AddTimestampEnricher extends BaseDataEnricher {
+    private static final String LABEL = " | Timestamp: ";
+
     private DataEnricher enricher;
+    private final CachedTimestamp timestamp = new CachedTimestamp();
 
     public AddTimestampEnricher(DataEnricher enricher) {
         this.enricher = enricher;
@@ -64,11 +617,19 @@ class AddTimestampEnricher extends BaseDataEnricher {
     @Override
     public String enrich(String data) {
         String enrichedData = enricher.enrich(data);
-        return enrichedData + " | Timestamp: " + System.currentTimeMillis();
+        return enrichedData + LABEL + timestamp.now();
+    }
+
+    @Override
+    public void enrichTo(CharSequence data, Appendable out) throws IOException {
+        enricher.enrichTo(data, out);
+        out.append(LABEL).append(timestamp.now());
     }
 }
 
 class AddSourceInfoEnricher extends BaseDataEnricher {
+    private static final String SOURCE_INFO = " | Source: SensorX";
+
     private DataEnricher enricher;
 
     public AddSourceInfoEnricher(DataEnricher enricher) {
@@ -78,13 +639,310 @@ class AddSourceInfoEnricher extends BaseDataEnricher {
     @Override
     public String enrich(String data) {
         String enrichedData = enricher.enrich(data);
-        return enrichedData + " | Source: SensorX";
+        return enrichedData + SOURCE_INFO;
+    }
+
+    @Override
+    public void enrichTo(CharSequence data, Appendable out) throws IOException {
+        enricher.enrichTo(data, out);
+        out.append(SOURCE_INFO);
+    }
+}
+
+// Instrumentation - per-stage counters and latency histograms
+class LatencyHistogram {
+    // Log-linear buckets: 8 sub-buckets per power of two, so each bucket is within 12.5% of its values
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKET_COUNT];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        counts[bucketIndex(Math.max(nanos, 0))].increment();
+    }
+
+    public long[] snapshotCounts() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts[i].sum();
+        }
+        return snapshot;
+    }
+
+    // Returns the highest value in the bucket holding the given percentile (0-100)
+    public static long percentile(long[] counts, double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(counts.length - 1);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
+
+class StageMetrics {
+    private final String name;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder charsIn = new LongAdder();
+    private final LongAdder charsOut = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // Exact maximum; the histogram only knows the upper bound of the top bucket
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public StageMetrics(String name) {
+        this.name = name;
+    }
+
+    public void record(long elapsedNanos, long inputLength, long outputLength) {
+        invocations.increment();
+        charsIn.add(inputLength);
+        charsOut.add(outputLength);
+        latency.record(elapsedNanos);
+        maxNanos.accumulate(elapsedNanos);
+    }
+
+    public StageSnapshot snapshot() {
+        long[] counts = latency.snapshotCounts();
+        return new StageSnapshot(name, invocations.sum(), charsIn.sum(), charsOut.sum(),
+                LatencyHistogram.percentile(counts, 50), LatencyHistogram.percentile(counts, 99),
+                maxNanos.get());
+    }
+}
+
+class StageSnapshot {
+    final String name;
+    final long invocations;
+    final long charsIn;
+    final long charsOut;
+    final long p50Nanos;
+    final long p99Nanos;
+    final long maxNanos;
+
+    StageSnapshot(String name, long invocations, long charsIn, long charsOut, long p50Nanos, long p99Nanos, long maxNanos) {
+        this.name = name;
+        this.invocations = invocations;
+        this.charsIn = charsIn;
+        this.charsOut = charsOut;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": calls=" + invocations + " in=" + charsIn + " out=" + charsOut
+                + " p50=" + p50Nanos + "ns p99=" + p99Nanos + "ns max=" + maxNanos + "ns";
+    }
+}
+
+// Wraps a filter as a link in an instrumented chain; instrumented links are not fused in streaming mode
+class InstrumentedFilter extends DataFilter {
+    private final DataFilter delegate;
+    private final StageMetrics metrics;
+
+    public InstrumentedFilter(DataFilter delegate, StageMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected String applyFilter(String data) {
+        long startNanos = System.nanoTime();
+        String result = delegate.applyFilter(data);
+        metrics.record(System.nanoTime() - startNanos, data.length(), result.length());
+        return result;
+    }
+}
+
+// Counts chars passing through to the wrapped Appendable
+class CountingAppendable implements Appendable {
+    private final Appendable out;
+    private long count;
+
+    CountingAppendable(Appendable out) {
+        this.out = out;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        CharSequence text = csq == null ? "null" : csq;
+        out.append(text);
+        count += text.length();
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        CharSequence text = csq == null ? "null" : csq;
+        out.append(text, start, end);
+        count += end - start;
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        out.append(c);
+        count++;
+        return this;
+    }
+
+    long count() {
+        return count;
+    }
+}
+
+// Records self time: time spent in instrumented enrichers nested inside this one is subtracted,
+// so wrapping every decorator layer gives each layer its own latency.
+class InstrumentedEnricher implements DataEnricher {
+    private static final ThreadLocal<long[]> NESTED_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final DataEnricher delegate;
+    private final StageMetrics metrics;
+
+    public InstrumentedEnricher(DataEnricher delegate, StageMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String enrich(String data) {
+        long[] nested = NESTED_NANOS.get();
+        long outerNested = nested[0];
+        nested[0] = 0;
+        long startNanos = System.nanoTime();
+        String result;
+        long selfNanos;
+        try {
+            result = delegate.enrich(data);
+        } finally {
+            selfNanos = exitNested(nested, outerNested, startNanos);
+        }
+        metrics.record(selfNanos, data.length(), result.length());
+        return result;
+    }
+
+    @Override
+    public void enrichTo(CharSequence data, Appendable out) throws IOException {
+        CountingAppendable counting = new CountingAppendable(out);
+        long[] nested = NESTED_NANOS.get();
+        long outerNested = nested[0];
+        nested[0] = 0;
+        long startNanos = System.nanoTime();
+        long selfNanos;
+        try {
+            delegate.enrichTo(data, counting);
+        } finally {
+            selfNanos = exitNested(nested, outerNested, startNanos);
+        }
+        metrics.record(selfNanos, data.length(), counting.count());
+    }
+
+    // Returns this call's self time and charges its total time to the enclosing instrumented call
+    private static long exitNested(long[] nested, long outerNested, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long selfNanos = elapsedNanos - nested[0];
+        nested[0] = outerNested + elapsedNanos;
+        return selfNanos;
+    }
+}
+
+class PipelineMetrics implements AutoCloseable {
+    private final Map<String, StageMetrics> stages = new ConcurrentHashMap<>();
+    private ScheduledExecutorService dumper;
+
+    public StageMetrics stage(String name) {
+        return stages.computeIfAbsent(name, StageMetrics::new);
+    }
+
+    // Returns a parallel chain of instrumented links; the original filters and their links are left untouched
+    public DataFilter instrument(DataFilter head) {
+        DataFilter instrumentedHead = null;
+        DataFilter previous = null;
+        for (DataFilter filter = head; filter != null; filter = filter.nextFilter) {
+            DataFilter link = new InstrumentedFilter(filter, stage(filter.getClass().getSimpleName()));
+            if (previous == null) {
+                instrumentedHead = link;
+            } else {
+                previous.setNextFilter(link);
+            }
+            previous = link;
+        }
+        return instrumentedHead;
+    }
+
+    public DataEnricher instrument(String name, DataEnricher enricher) {
+        return new InstrumentedEnricher(enricher, stage(name));
+    }
+
+    public List<StageSnapshot> snapshot() {
+        List<StageSnapshot> snapshots = new ArrayList<>();
+        for (StageMetrics metrics : stages.values()) {
+            snapshots.add(metrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    public synchronized void startPeriodicDump(Duration period, Consumer<String> output) {
+        if (dumper != null) {
+            throw new IllegalStateException("Periodic dump already started");
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodNanos = period.toNanos();
+        dumper.scheduleAtFixedRate(() -> snapshot().forEach(stage -> output.accept(stage.toString())),
+                periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
     }
 }
 
 // Client Code
 public class DataPipelineApp {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // Chain of Responsibility - Filtering Data
         DataFilter removePunctuation = new RemovePunctuationFilter();
         DataFilter lowercase = new LowercaseFilter();
@@ -97,6 +955,30 @@ public class DataPipelineApp {
         System.out.println("Original Data: " + rawData);
         removePunctuation.process(rawData);
 
+        // Streaming Mode - same chain, fused into one pass per record
+        StreamingDataPipeline pipeline = new StreamingDataPipeline(removePunctuation);
+        List<String> batch = List.of("  Sensor-1: OK!  ", "Sensor-2: WARN; temp=71.5", "  Sensor-3: Offline...");
+        pipeline.process(batch.iterator(), record -> System.out.println("Streamed Data: " + record));
+
+        // Parallel Mode - chunks run on a pool, output stays in input order
+        try (ParallelDataPipeline parallelPipeline = new ParallelDataPipeline(removePunctuation, 4, 2, 8)) {
+            parallelPipeline.setStatsListener((chunkIndex, records, elapsedNanos) ->
+                    System.out.println("Chunk " + chunkIndex + ": " + records + " records in " + elapsedNanos / 1_000 + " us"));
+            List<String> lines = List.of("Line ONE.", "Line TWO!", "Line THREE?", "Line FOUR;", "Line FIVE...");
+            parallelPipeline.process(lines.iterator(), record -> System.out.println("Parallel Data: " + record));
+        }
+
+        // File Stages - mapped source through the fused chain into a gathering sink
+        Path input = Files.createTempFile("sensor", ".log");
+        Path output = Files.createTempFile("sensor", ".out");
+        Files.write(input, List.of("  Reading #1: 42.0C!  ", "Reading #2: 43.5C?", "  Reading #3: OFFLINE."));
+        try (MappedFileSource source = new MappedFileSource(input); GatheringFileSink sink = new GatheringFileSink(output)) {
+            pipeline.process(source, sink);
+        }
+        Files.readAllLines(output).forEach(line -> System.out.println("File Data: " + line));
+        Files.delete(input);
+        Files.delete(output);
+
         // Decorator - Enriching Data
         DataEnricher baseEnricher = new BaseDataEnricher();
         DataEnricher timestampEnricher = new AddTimestampEnricher(baseEnricher);
@@ -104,6 +986,24 @@ public class DataPipelineApp {
 
         String enrichedData = fullEnricher.enrich("Processed Data: Hello World");
         System.out.println("Enriched Data: " + enrichedData);
+
+        // Decorator - enriching into a reused buffer, no per-record garbage
+        StringBuilder out = new StringBuilder(128);
+        fullEnricher.enrichTo("Processed Data: Hello World", out);
+        System.out.println("Enriched Into Buffer: " + out);
+
+        // Instrumentation - per-stage counts and latency percentiles
+        try (PipelineMetrics metrics = new PipelineMetrics()) {
+            DataFilter measuredChain = metrics.instrument(removePunctuation);
+            // Each decorator layer is wrapped, so every series reports that layer's own time
+            DataEnricher measuredEnricher = metrics.instrument("AddSourceInfoEnricher",
+                    new AddSourceInfoEnricher(metrics.instrument("AddTimestampEnricher",
+                            new AddTimestampEnricher(metrics.instrument("BaseDataEnricher", new BaseDataEnricher())))));
+            measuredChain.process("  Measured, DATA!  ");
+            measuredEnricher.enrich("measured data");
+            measuredEnricher.enrichTo("measured data", new StringBuilder());
+            metrics.snapshot().forEach(stage -> System.out.println("Metrics: " + stage));
+        }
     }
 }
 
@@ -112,6 +1012,10 @@ Explanation:
 1. `DataFilter` is the abstract base class for the Chain of Responsibility, with a method `process()` to apply filters in sequence.
 2. `RemovePunctuationFilter`, `LowercaseFilter`, and `TrimWhitespaceFilter` are concrete filters that modify the data.
 3. `DataEnricher` is the interface for the Decorator pattern, and `BaseDataEnricher` is the base class.
-4. `AddTimestampEnricher` and `AddSourceInfoEnricher` are concrete decorators that add extra information to the data.
-5. `DataPipelineApp` is the client that demonstrates filtering the data using Chain of Responsibility and enriching it using Decorator.
+4. `AddTimestampEnricher` and `AddSourceInfoEnricher` are concrete decorators that add extra information to the data. `enrichTo()` appends through the whole decorator stack into a caller-supplied `Appendable`, and `CachedTimestamp` renders the timestamp once per millisecond. A `CharBuffer` works as the target and can be encoded into a `ByteBuffer` with a reused `CharsetEncoder`.
+5. `StreamingDataPipeline` compiles a filter chain into stages, fusing adjacent char-level filters (punctuation, lowercase, trim) into one pass over a reusable buffer (records with non-ASCII chars run the same filters unfused, so results always match the chain), and hands each result to a `DataSink`.
+6. `ParallelDataPipeline` splits input into chunks, runs the filter chain on a `ForkJoinPool`, bounds in-flight chunks, emits results in input order, and reports per-chunk timing to a `ChunkStatsListener`.
+7. `MappedFileSource` reads newline-delimited files through sliding `FileChannel.map` windows, so files over 2 GB work, and `GatheringFileSink` writes records through a ring of direct buffers flushed with a gathering `FileChannel.write`.
+8. `PipelineMetrics` wraps filters and enrichers in `InstrumentedFilter`/`InstrumentedEnricher` links that record call counts, chars in and out, and a log-linear `LatencyHistogram` on `LongAdder` counters plus an exact maximum, with snapshots and an optional periodic dump. Enricher links record self time, so wrapping each decorator layer reports per-layer latency.
+9. `DataPipelineApp` is the client that demonstrates filtering the data using Chain of Responsibility and enriching it using Decorator.
 */
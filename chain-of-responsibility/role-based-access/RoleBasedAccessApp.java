@@ -1,3 +1,17 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 // Proxy Pattern - Access Control
 interface ResourceAccess {
     void accessResource(String userRole);
@@ -11,22 +25,162 @@ class RealResourceAccess implements ResourceAccess {
     }
 }
 
+// Access Policy - rules consulted by the proxy, versioned so cached decisions can be invalidated
+interface AccessPolicy {
+    // ResourceAccessProxy passes the role lowercased with Locale.ROOT, matching its cache key
+    boolean isAllowed(String userRole, String resource);
+
+    // Changes whenever the rules change
+    long version();
+}
+
+class RoleAccessPolicy implements AccessPolicy {
+    private final Set<String> allowedRoles = ConcurrentHashMap.newKeySet();
+    private final AtomicLong version = new AtomicLong();
+
+    public RoleAccessPolicy(String... roles) {
+        for (String role : roles) {
+            allowedRoles.add(role.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    public void allowRole(String role) {
+        allowedRoles.add(role.toLowerCase(Locale.ROOT));
+        version.incrementAndGet();
+    }
+
+    public void revokeRole(String role) {
+        allowedRoles.remove(role.toLowerCase(Locale.ROOT));
+        version.incrementAndGet();
+    }
+
+    // Roles are matched case-insensitively; the proxy already passes them lowercased
+    @Override
+    public boolean isAllowed(String userRole, String resource) {
+        return allowedRoles.contains(userRole.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+}
+
 // Proxy Class for Access Control
 class ResourceAccessProxy implements ResourceAccess {
+    private static class DecisionKey {
+        final String role;
+        final String resource;
+
+        DecisionKey(String role, String resource) {
+            this.role = role;
+            this.resource = resource;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey other = (DecisionKey) o;
+            return role.equals(other.role) && resource.equals(other.resource);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(role, resource);
+        }
+    }
+
+    private static class Decision {
+        final long policyVersion;
+        final boolean allowed;
+
+        Decision(long policyVersion, boolean allowed) {
+            this.policyVersion = policyVersion;
+            this.allowed = allowed;
+        }
+    }
+
+    // Roles come from callers, so the cache is capped rather than growing with every distinct string
+    static final int MAX_CACHED_DECISIONS = 1024;
+
+    // Access-ordered, so a full cache evicts only its least recently used decision
+    private static class DecisionCache extends LinkedHashMap<DecisionKey, Decision> {
+        private static final long serialVersionUID = 1L;
+
+        DecisionCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DecisionKey, Decision> eldest) {
+            return size() > MAX_CACHED_DECISIONS;
+        }
+    }
+
     private RealResourceAccess realResourceAccess;
+    private final String resource;
+    private final AccessPolicy policy;
+    // Guarded by itself: an access-ordered get also reorders the entries
+    private final DecisionCache decisions = new DecisionCache();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     public ResourceAccessProxy() {
+        this("resource", new RoleAccessPolicy("Admin", "Manager"));
+    }
+
+    public ResourceAccessProxy(String resource, AccessPolicy policy) {
         this.realResourceAccess = new RealResourceAccess();
+        this.resource = resource;
+        this.policy = policy;
     }
 
     @Override
     public void accessResource(String userRole) {
-        if (userRole.equalsIgnoreCase("Admin") || userRole.equalsIgnoreCase("Manager")) {
+        if (isAllowed(userRole)) {
             realResourceAccess.accessResource(userRole);
         } else {
             System.out.println("Access denied for role: " + userRole);
         }
     }
+
+    // Entries stamped with an older policy version are ignored, so a rule change invalidates all of them at once.
+    // The role is normalized once and the policy sees the same value the cache is keyed by.
+    private boolean isAllowed(String userRole) {
+        String role = userRole.toLowerCase(Locale.ROOT);
+        long version = policy.version();
+        DecisionKey key = new DecisionKey(role, resource);
+        Decision decision;
+        synchronized (decisions) {
+            decision = decisions.get(key);
+        }
+        if (decision != null && decision.policyVersion == version) {
+            hits.increment();
+            return decision.allowed;
+        }
+        misses.increment();
+        boolean allowed = policy.isAllowed(role, resource);
+        synchronized (decisions) {
+            decisions.put(key, new Decision(version, allowed));
+        }
+        return allowed;
+    }
+
+    public int getCachedDecisionCount() {
+        synchronized (decisions) {
+            return decisions.size();
+        }
+    }
+
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    public long getCacheMisses() {
+        return misses.sum();
+    }
 }
 
 // Chain of Responsibility Pattern - Permission Validation
@@ -38,14 +192,34 @@ abstract class PermissionHandler {
     }
 
     public abstract void handleRequest(String permission);
+
+    // Permission this handler grants; used to compile the chain into a lookup table
+    public abstract String getPermission();
+
+    protected void grant() {
+        System.out.println(getPermission() + " permission granted.");
+    }
+
+    protected void deny(String permission) {
+        System.out.println("Permission denied: " + permission);
+    }
+
+    // What this handler does with a permission nobody matched when it is the last link
+    protected void onUnmatched(String permission) {
+    }
 }
 
 // Concrete Handler Classes
 class ReadPermissionHandler extends PermissionHandler {
+    @Override
+    public String getPermission() {
+        return "Read";
+    }
+
     @Override
     public void handleRequest(String permission) {
-        if (permission.equalsIgnoreCase("Read")) {
-            System.out.println("Read permission granted.");
+        if (permission.equalsIgnoreCase(getPermission())) {
+            grant();
         } else if (nextHandler != null) {
             nextHandler.handleRequest(permission);
         }
@@ -53,10 +227,15 @@ class ReadPermissionHandler extends PermissionHandler {
 }
 
 class WritePermissionHandler extends PermissionHandler {
+    @Override
+    public String getPermission() {
+        return "Write";
+    }
+
     @Override
     public void handleRequest(String permission) {
-        if (permission.equalsIgnoreCase("Write")) {
-            System.out.println("Write permission granted.");
+        if (permission.equalsIgnoreCase(getPermission())) {
+            grant();
         } else if (nextHandler != null) {
             nextHandler.handleRequest(permission);
         }
@@ -64,14 +243,186 @@ class WritePermissionHandler extends PermissionHandler {
 }
 
 class DeletePermissionHandler extends PermissionHandler {
+    @Override
+    public String getPermission() {
+        return "Delete";
+    }
+
+    @Override
+    protected void onUnmatched(String permission) {
+        deny(permission);
+    }
+
+    @Override
+    public void handleRequest(String permission) {
+        if (permission.equalsIgnoreCase(getPermission())) {
+            grant();
+        } else if (nextHandler != null) {
+            nextHandler.handleRequest(permission);
+        } else {
+            onUnmatched(permission);
+        }
+    }
+}
+
+// Handler for an arbitrary named permission, for fine-grained permission sets
+class NamedPermissionHandler extends PermissionHandler {
+    private final String permission;
+
+    public NamedPermissionHandler(String permission) {
+        this.permission = permission;
+    }
+
+    @Override
+    public String getPermission() {
+        return permission;
+    }
+
+    @Override
+    protected void onUnmatched(String permission) {
+        deny(permission);
+    }
+
     @Override
     public void handleRequest(String permission) {
-        if (permission.equalsIgnoreCase("Delete")) {
-            System.out.println("Delete permission granted.");
+        if (permission.equalsIgnoreCase(this.permission)) {
+            grant();
         } else if (nextHandler != null) {
             nextHandler.handleRequest(permission);
         } else {
-            System.out.println("Permission denied: " + permission);
+            onUnmatched(permission);
+        }
+    }
+}
+
+// Compiled Chain - one lookup per request instead of a walk down the chain
+class CompiledPermissionTable {
+    private final Map<String, Integer> permissionIds = new HashMap<>();
+    private final PermissionHandler[] handlers;
+    // Unmatched requests fall through to the tail, as they would in the linear walk
+    private final PermissionHandler tail;
+
+    // The first handler in the chain for a permission wins, as it would in the linear walk
+    public CompiledPermissionTable(PermissionHandler head) {
+        List<PermissionHandler> compiled = new ArrayList<>();
+        PermissionHandler last = null;
+        for (PermissionHandler handler = head; handler != null; handler = handler.nextHandler) {
+            String key = foldCase(handler.getPermission());
+            if (!permissionIds.containsKey(key)) {
+                permissionIds.put(key, compiled.size());
+                compiled.add(handler);
+            }
+            last = handler;
+        }
+        this.handlers = compiled.toArray(new PermissionHandler[0]);
+        this.tail = last;
+    }
+
+    // Two names fold to the same key exactly when equalsIgnoreCase, which the handlers use, matches them.
+    // ASCII names are folded in place, and returned as they are when already lower case.
+    static String foldCase(String permission) {
+        int length = permission.length();
+        int firstUpper = -1;
+        for (int i = 0; i < length; i++) {
+            char c = permission.charAt(i);
+            if (c >= 0x80) {
+                return foldUnicode(permission);
+            }
+            if (firstUpper < 0 && c >= 'A' && c <= 'Z') {
+                firstUpper = i;
+            }
+        }
+        if (firstUpper < 0) {
+            return permission;
+        }
+        char[] folded = new char[length];
+        permission.getChars(0, length, folded, 0);
+        for (int i = firstUpper; i < length; i++) {
+            char c = folded[i];
+            if (c >= 'A' && c <= 'Z') {
+                folded[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return new String(folded);
+    }
+
+    private static String foldUnicode(String permission) {
+        StringBuilder folded = new StringBuilder(permission.length());
+        permission.codePoints().forEach(c -> folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+        return folded.toString();
+    }
+
+    // Interns a permission name to its id, or -1 if no handler grants it
+    public int idOf(String permission) {
+        Integer id = permissionIds.get(foldCase(permission));
+        return id == null ? -1 : id;
+    }
+
+    public void handleRequest(String permission) {
+        int id = idOf(permission);
+        if (id >= 0) {
+            handlers[id].grant();
+        } else if (tail != null) {
+            tail.onUnmatched(permission);
+        }
+    }
+
+    public void handleRequest(int permissionId) {
+        if (permissionId >= 0 && permissionId < handlers.length) {
+            handlers[permissionId].grant();
+        } else {
+            System.out.println("Permission denied: unknown permission id " + permissionId);
+        }
+    }
+}
+
+// Benchmark - linear chain vs compiled table
+class PermissionChainBenchmark {
+    private static class CountingPermissionHandler extends NamedPermissionHandler {
+        static long granted;
+
+        CountingPermissionHandler(String permission) {
+            super(permission);
+        }
+
+        @Override
+        protected void grant() {
+            granted++;
+        }
+    }
+
+    public static void run(int requestCount) {
+        Random random = new Random(42);
+        for (int handlerCount : new int[] {10, 100, 1000}) {
+            PermissionHandler head = null;
+            for (int i = handlerCount - 1; i >= 0; i--) {
+                PermissionHandler handler = new CountingPermissionHandler("perm-" + i);
+                handler.setNextHandler(head);
+                head = handler;
+            }
+            CompiledPermissionTable table = new CompiledPermissionTable(head);
+            String[] requests = new String[requestCount];
+            for (int i = 0; i < requestCount; i++) {
+                requests[i] = "perm-" + random.nextInt(handlerCount);
+            }
+
+            long chainNanos = 0;
+            long tableNanos = 0;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                for (String request : requests) {
+                    head.handleRequest(request);
+                }
+                chainNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (String request : requests) {
+                    table.handleRequest(request);
+                }
+                tableNanos = System.nanoTime() - start;
+            }
+            System.out.println(handlerCount + " handlers: chain " + chainNanos / requestCount + " ns/op, table "
+                    + tableNanos / requestCount + " ns/op");
         }
     }
 }
@@ -84,6 +435,15 @@ public class RoleBasedAccessApp {
         resourceAccess.accessResource("Admin");
         resourceAccess.accessResource("User");
 
+        // Proxy Pattern - cached decisions, invalidated when the policy changes
+        RoleAccessPolicy policy = new RoleAccessPolicy("Admin");
+        ResourceAccessProxy cachedProxy = new ResourceAccessProxy("reports", policy);
+        cachedProxy.accessResource("Manager");
+        cachedProxy.accessResource("Manager");
+        policy.allowRole("Manager");
+        cachedProxy.accessResource("Manager");
+        System.out.println("Decision cache: hits=" + cachedProxy.getCacheHits() + ", misses=" + cachedProxy.getCacheMisses());
+
         // Chain of Responsibility - Permission Validation
         PermissionHandler readHandler = new ReadPermissionHandler();
         PermissionHandler writeHandler = new WritePermissionHandler();
@@ -97,6 +457,19 @@ public class RoleBasedAccessApp {
         readHandler.handleRequest("Write");
         readHandler.handleRequest("Delete");
         readHandler.handleRequest("Execute");
+
+        // Compiled Chain - same decisions from a single lookup
+        System.out.println("\nCompiled Permission Validation:");
+        CompiledPermissionTable permissionTable = new CompiledPermissionTable(readHandler);
+        permissionTable.handleRequest("Write");
+        permissionTable.handleRequest("Execute");
+        permissionTable.handleRequest(permissionTable.idOf("Delete"));
+        permissionTable.handleRequest(permissionTable.idOf("Execute"));
+
+        if (Arrays.asList(args).contains("--benchmark")) {
+            System.out.println("\nBenchmark:");
+            PermissionChainBenchmark.run(20_000);
+        }
     }
 }
 
@@ -104,8 +477,9 @@ public class RoleBasedAccessApp {
 Explanation:
 1. `ResourceAccess` is the interface for the Proxy pattern that defines access to the resource.
 2. `RealResourceAccess` is the real subject class that provides access to the resource.
-3. `ResourceAccessProxy` is the proxy class that controls access to the resource based on the user's role.
+3. `ResourceAccessProxy` is the proxy class that controls access to the resource based on the user's role. It caches decisions per (role, resource), stamped with the `AccessPolicy` version so a rule change in `RoleAccessPolicy` invalidates every entry at once, and counts cache hits and misses. The role is lowercased once and that value is both the cache key and what the policy sees, and the cache is an access-ordered `LinkedHashMap` capped at `MAX_CACHED_DECISIONS` entries that evicts the least recently used decision.
 4. `PermissionHandler` is the abstract base class for the Chain of Responsibility pattern, defining the method `handleRequest()` for permission validation.
 5. `ReadPermissionHandler`, `WritePermissionHandler`, and `DeletePermissionHandler` are concrete handler classes that validate specific permissions.
-6. `RoleBasedAccessApp` is the client that demonstrates both access control using Proxy and permission validation using Chain of Responsibility.
+6. `NamedPermissionHandler` handles an arbitrary permission name, and `CompiledPermissionTable` compiles any handler chain into an interned permission id to handler table so each request is a single lookup. Unmatched names get the chain tail's `onUnmatched()` behaviour, and names are case-folded the same way `equalsIgnoreCase` compares them. `PermissionChainBenchmark` compares the two at 10, 100 and 1000 handlers; it only runs when the app is started with `--benchmark`.
+7. `RoleBasedAccessApp` is the client that demonstrates both access control using Proxy and permission validation using Chain of Responsibility.
 */
@@ -1,5 +1,19 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
 
 // Chain of Responsibility Pattern - Content Moderation
 abstract class ContentModerator {
@@ -9,46 +23,292 @@ abstract class ContentModerator {
         this.nextModerator = nextModerator;
     }
 
-    public abstract void moderate(String content);
+    public void moderate(String content) {
+        System.out.println(evaluate(content, null));
+    }
+
+    // Evaluates each post independently on the common pool; verdicts come back in input order
+    public List<ModerationVerdict> moderateBatch(List<String> posts) {
+        return posts.parallelStream()
+                .map(post -> evaluate(post, null))
+                .collect(Collectors.toList());
+    }
+
+    // scan is the post's single ModerationEngine pass, created by the first engine-backed moderator and passed down
+    public abstract ModerationVerdict evaluate(String content, ModerationScan scan);
+}
+
+// Structured result of running a post through the moderator chain
+class ModerationVerdict {
+    private static final ModerationVerdict APPROVED = new ModerationVerdict(null);
+
+    private final String blockReason;
+
+    private ModerationVerdict(String blockReason) {
+        this.blockReason = blockReason;
+    }
+
+    public static ModerationVerdict approved() {
+        return APPROVED;
+    }
+
+    public static ModerationVerdict blocked(String reason) {
+        return new ModerationVerdict(reason);
+    }
+
+    public boolean isApproved() {
+        return blockReason == null;
+    }
+
+    public String getBlockReason() {
+        return blockReason;
+    }
+
+    @Override
+    public String toString() {
+        return isApproved() ? "Content approved." : "Content blocked due to " + blockReason + ".";
+    }
 }
 
 // Concrete Moderator Classes
 class LanguageModerator extends ContentModerator {
+    private final ModerationEngine engine;
+
+    public LanguageModerator() {
+        this(null);
+    }
+
+    public LanguageModerator(ModerationEngine engine) {
+        this.engine = engine;
+    }
+
     @Override
-    public void moderate(String content) {
-        if (content.contains("badword")) {
-            System.out.println("Content blocked due to inappropriate language.");
+    public ModerationVerdict evaluate(String content, ModerationScan scan) {
+        boolean blocked;
+        if (engine == null) {
+            blocked = content.contains("badword");
+        } else {
+            scan = engine.scanIfNeeded(content, scan);
+            blocked = scan.matched(ModerationCategory.LANGUAGE);
+        }
+        if (blocked) {
+            return ModerationVerdict.blocked("inappropriate language");
         } else if (nextModerator != null) {
-            nextModerator.moderate(content);
+            return nextModerator.evaluate(content, scan);
         } else {
-            System.out.println("Content approved.");
+            return ModerationVerdict.approved();
         }
     }
 }
 
 class LengthModerator extends ContentModerator {
     @Override
-    public void moderate(String content) {
+    public ModerationVerdict evaluate(String content, ModerationScan scan) {
         if (content.length() > 280) {
-            System.out.println("Content blocked due to excessive length.");
+            return ModerationVerdict.blocked("excessive length");
         } else if (nextModerator != null) {
-            nextModerator.moderate(content);
+            return nextModerator.evaluate(content, scan);
         } else {
-            System.out.println("Content approved.");
+            return ModerationVerdict.approved();
         }
     }
 }
 
 class SpamModerator extends ContentModerator {
+    private final ModerationEngine engine;
+
+    public SpamModerator() {
+        this(null);
+    }
+
+    public SpamModerator(ModerationEngine engine) {
+        this.engine = engine;
+    }
+
     @Override
-    public void moderate(String content) {
-        if (content.contains("buy now")) {
-            System.out.println("Content blocked due to potential spam.");
+    public ModerationVerdict evaluate(String content, ModerationScan scan) {
+        boolean blocked;
+        if (engine == null) {
+            blocked = content.contains("buy now");
+        } else {
+            scan = engine.scanIfNeeded(content, scan);
+            blocked = scan.matched(ModerationCategory.SPAM);
+        }
+        if (blocked) {
+            return ModerationVerdict.blocked("potential spam");
         } else if (nextModerator != null) {
-            nextModerator.moderate(content);
+            return nextModerator.evaluate(content, scan);
         } else {
-            System.out.println("Content approved.");
+            return ModerationVerdict.approved();
+        }
+    }
+}
+
+// Moderation Engine - one case-insensitive Aho-Corasick pass over a post for every rule set
+enum ModerationCategory {
+    LANGUAGE,
+    SPAM
+}
+
+class ModerationScan {
+    private final ModerationEngine engine;
+    private final int matchedMask;
+
+    ModerationScan(ModerationEngine engine, int matchedMask) {
+        this.engine = engine;
+        this.matchedMask = matchedMask;
+    }
+
+    ModerationEngine getEngine() {
+        return engine;
+    }
+
+    public boolean matched(ModerationCategory category) {
+        return (matchedMask & (1 << category.ordinal())) != 0;
+    }
+
+    public EnumSet<ModerationCategory> getMatchedCategories() {
+        EnumSet<ModerationCategory> matched = EnumSet.noneOf(ModerationCategory.class);
+        for (ModerationCategory category : ModerationCategory.values()) {
+            if (matched(category)) {
+                matched.add(category);
+            }
+        }
+        return matched;
+    }
+}
+
+class ModerationEngineBuilder {
+    // Trie edges keyed by (node << 16 | char) while building
+    private final Map<Long, Integer> edges = new HashMap<>();
+    private final List<Integer> outputs = new ArrayList<>(List.of(0));
+
+    public ModerationEngineBuilder addRule(ModerationCategory category, String phrase) {
+        int node = 0;
+        for (int i = 0; i < phrase.length(); i++) {
+            long key = ((long) node << 16) | Character.toLowerCase(phrase.charAt(i));
+            Integer next = edges.get(key);
+            if (next == null) {
+                next = outputs.size();
+                outputs.add(0);
+                edges.put(key, next);
+            }
+            node = next;
+        }
+        outputs.set(node, outputs.get(node) | (1 << category.ordinal()));
+        return this;
+    }
+
+    public ModerationEngine build() {
+        long[] keys = new long[edges.size()];
+        int k = 0;
+        for (long key : edges.keySet()) {
+            keys[k++] = key;
+        }
+        // Sorting the keys groups edges by node, ordered by char within each node
+        Arrays.sort(keys);
+        int nodeCount = outputs.size();
+        int[] edgeStart = new int[nodeCount + 1];
+        char[] edgeChars = new char[keys.length];
+        int[] edgeTargets = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            edgeStart[(int) (keys[i] >>> 16) + 1]++;
+            edgeChars[i] = (char) keys[i];
+            edgeTargets[i] = edges.get(keys[i]);
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            edgeStart[node + 1] += edgeStart[node];
+        }
+        int[] output = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            output[node] = outputs.get(node);
+        }
+        return new ModerationEngine(edgeStart, edgeChars, edgeTargets, output);
+    }
+}
+
+// Immutable and thread-safe once built
+class ModerationEngine {
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    private final int[] output;
+    private final int allCategoriesMask;
+
+    ModerationEngine(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int[] output) {
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.output = output;
+        this.fail = new int[output.length];
+        int mask = 0;
+        for (int categoryMask : output) {
+            mask |= categoryMask;
+        }
+        this.allCategoriesMask = mask;
+        buildFailureLinks();
+    }
+
+    // Breadth-first, so each node's failure target is finished before its children; outputs inherit along failure links
+    private void buildFailureLinks() {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            queue.add(edgeTargets[e]);
         }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int child = edgeTargets[e];
+                char c = edgeChars[e];
+                int f = fail[node];
+                int next = transition(f, c);
+                while (next < 0 && f != 0) {
+                    f = fail[f];
+                    next = transition(f, c);
+                }
+                fail[child] = next < 0 ? 0 : next;
+                output[child] |= output[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    private int transition(int node, char c) {
+        int low = edgeStart[node];
+        int high = edgeStart[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = edgeChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    public ModerationScan scan(String content) {
+        int state = 0;
+        int matched = 0;
+        for (int i = 0; i < content.length() && matched != allCategoriesMask; i++) {
+            char c = Character.toLowerCase(content.charAt(i));
+            int next = transition(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = transition(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            matched |= output[state];
+        }
+        return new ModerationScan(this, matched);
+    }
+
+    ModerationScan scanIfNeeded(String content, ModerationScan scan) {
+        return scan != null && scan.getEngine() == this ? scan : scan(content);
     }
 }
 
@@ -87,9 +347,221 @@ class PostScheduler {
     }
 }
 
+// Timed Scheduling - hashed timing wheel with O(1) schedule and cancel
+class ScheduledPost {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int DISPATCHED = 2;
+
+    final PostCommand command;
+    // Nanos after the scheduler started; saturates at Long.MAX_VALUE for far-future posts
+    final long dueOffsetNanos;
+    private final TimingWheelPostScheduler scheduler;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    // Owned by the scheduler's wheel thread
+    long remainingRounds;
+    ScheduledPost prev;
+    ScheduledPost next;
+    WheelBucket bucket;
+
+    ScheduledPost(TimingWheelPostScheduler scheduler, PostCommand command, long dueOffsetNanos) {
+        this.scheduler = scheduler;
+        this.command = command;
+        this.dueOffsetNanos = dueOffsetNanos;
+    }
+
+    // Returns false if the post was already dispatched or cancelled
+    public boolean cancel() {
+        if (!state.compareAndSet(PENDING, CANCELLED)) {
+            return false;
+        }
+        scheduler.onCancelled(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    boolean markDispatched() {
+        return state.compareAndSet(PENDING, DISPATCHED);
+    }
+}
+
+// Doubly linked list of posts in one wheel slot, so removal is O(1)
+class WheelBucket {
+    private ScheduledPost head;
+    private ScheduledPost tail;
+
+    void add(ScheduledPost post) {
+        post.bucket = this;
+        if (head == null) {
+            head = tail = post;
+        } else {
+            tail.next = post;
+            post.prev = tail;
+            tail = post;
+        }
+    }
+
+    ScheduledPost remove(ScheduledPost post) {
+        ScheduledPost next = post.next;
+        if (post.prev != null) {
+            post.prev.next = next;
+        }
+        if (next != null) {
+            next.prev = post.prev;
+        }
+        if (post == head) {
+            head = next;
+        }
+        if (post == tail) {
+            tail = post.prev;
+        }
+        post.prev = null;
+        post.next = null;
+        post.bucket = null;
+        return next;
+    }
+
+    // Dispatches posts whose round has come and ages the rest by one revolution
+    void expire(TimingWheelPostScheduler scheduler) {
+        ScheduledPost post = head;
+        while (post != null) {
+            if (post.remainingRounds <= 0) {
+                ScheduledPost next = remove(post);
+                scheduler.dispatch(post);
+                post = next;
+            } else if (post.isCancelled()) {
+                post = remove(post);
+            } else {
+                post.remainingRounds--;
+                post = post.next;
+            }
+        }
+    }
+}
+
+class TimingWheelPostScheduler implements AutoCloseable {
+    private final long tickNanos;
+    private final WheelBucket[] wheel;
+    private final int mask;
+    private final long startNanos;
+    private final Queue<ScheduledPost> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final Queue<ScheduledPost> pendingCancels = new ConcurrentLinkedQueue<>();
+    private final ExecutorService dispatcher;
+    private final Thread wheelThread;
+    private volatile boolean running = true;
+    private long tick;
+
+    // wheelSize is rounded up to a power of two; maxConcurrency bounds how many posts execute at once
+    public TimingWheelPostScheduler(long tickMillis, int wheelSize, int maxConcurrency) {
+        if (tickMillis < 1 || wheelSize < 1 || maxConcurrency < 1) {
+            throw new IllegalArgumentException("tickMillis, wheelSize and maxConcurrency must be positive");
+        }
+        int size = Integer.highestOneBit(((wheelSize - 1) << 1) | 1);
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new WheelBucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new WheelBucket();
+        }
+        this.mask = size - 1;
+        this.dispatcher = Executors.newFixedThreadPool(maxConcurrency);
+        this.startNanos = System.nanoTime();
+        this.wheelThread = new Thread(this::run, "post-scheduler-wheel");
+        this.wheelThread.setDaemon(true);
+        this.wheelThread.start();
+    }
+
+    public ScheduledPost schedulePost(PostCommand postCommand, long executeAtMillis) {
+        long delayMillis;
+        try {
+            delayMillis = Math.max(Math.subtractExact(executeAtMillis, System.currentTimeMillis()), 0);
+        } catch (ArithmeticException e) {
+            delayMillis = executeAtMillis < 0 ? 0 : Long.MAX_VALUE;
+        }
+        // toNanos saturates, and the offset is clamped so nothing wraps into the past
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long dueOffsetNanos = delayNanos > Long.MAX_VALUE - elapsedNanos ? Long.MAX_VALUE : elapsedNanos + delayNanos;
+        ScheduledPost post = new ScheduledPost(this, postCommand, dueOffsetNanos);
+        pendingAdds.add(post);
+        return post;
+    }
+
+    void onCancelled(ScheduledPost post) {
+        pendingCancels.add(post);
+    }
+
+    void dispatch(ScheduledPost post) {
+        if (post.markDispatched()) {
+            try {
+                dispatcher.execute(post.command::execute);
+            } catch (RejectedExecutionException e) {
+                // Only happens when close() was interrupted before the wheel thread stopped
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long tickDeadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos;
+            while (running && (sleepNanos = tickDeadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(sleepNanos);
+            }
+            if (!running) {
+                return;
+            }
+            processCancels();
+            processAdds();
+            wheel[(int) (tick & mask)].expire(this);
+            tick++;
+        }
+    }
+
+    private void processCancels() {
+        ScheduledPost post;
+        while ((post = pendingCancels.poll()) != null) {
+            if (post.bucket != null) {
+                post.bucket.remove(post);
+            }
+        }
+    }
+
+    private void processAdds() {
+        ScheduledPost post;
+        while ((post = pendingAdds.poll()) != null) {
+            if (post.isCancelled()) {
+                continue;
+            }
+            long dueTick = Math.max(post.dueOffsetNanos / tickNanos, tick);
+            post.remainingRounds = (dueTick - tick) / wheel.length;
+            wheel[(int) (dueTick & mask)].add(post);
+        }
+    }
+
+    // Posts that have not come due yet are dropped. If interrupted while waiting, the dispatcher is
+    // still shut down and the interrupt flag is restored for the caller.
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(wheelThread);
+        try {
+            wheelThread.join();
+            dispatcher.shutdown();
+            dispatcher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            dispatcher.shutdown();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
 // Client Code
 public class SocialMediaPostingApp {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         // Chain of Responsibility - Content Moderation
         ContentModerator languageModerator = new LanguageModerator();
         ContentModerator lengthModerator = new LengthModerator();
@@ -106,6 +578,30 @@ public class SocialMediaPostingApp {
         System.out.println("\nModerating content: " + spamContent);
         languageModerator.moderate(spamContent);
 
+        // Moderation Engine - moderators share one scan of each post across all rule sets
+        ModerationEngine engine = new ModerationEngineBuilder()
+                .addRule(ModerationCategory.LANGUAGE, "badword")
+                .addRule(ModerationCategory.SPAM, "buy now")
+                .addRule(ModerationCategory.SPAM, "limited offer")
+                .build();
+        ContentModerator engineLanguageModerator = new LanguageModerator(engine);
+        ContentModerator engineLengthModerator = new LengthModerator();
+        ContentModerator engineSpamModerator = new SpamModerator(engine);
+        engineLanguageModerator.setNextModerator(engineLengthModerator);
+        engineLengthModerator.setNextModerator(engineSpamModerator);
+
+        System.out.println("\nModerating with engine: " + spamContent);
+        engineLanguageModerator.moderate(spamContent);
+        System.out.println("Matched categories: " + engine.scan("BADWORD and a Limited Offer").getMatchedCategories());
+
+        // Batch Moderation - parallel evaluation with structured verdicts
+        List<String> burst = List.of("Great game last night!", "Buy now, limited offer!", "No badword here? badword.");
+        List<ModerationVerdict> verdicts = engineLanguageModerator.moderateBatch(burst);
+        for (int i = 0; i < burst.size(); i++) {
+            ModerationVerdict verdict = verdicts.get(i);
+            System.out.println(burst.get(i) + " -> " + (verdict.isApproved() ? "approved" : "blocked: " + verdict.getBlockReason()));
+        }
+
         // Command Pattern - Scheduling Posts
         PostScheduler scheduler = new PostScheduler();
         PostCommand post1 = new SocialMediaPostCommand("Hello, world!");
@@ -116,15 +612,27 @@ public class SocialMediaPostingApp {
 
         System.out.println("\nExecuting scheduled posts:");
         scheduler.executeScheduledPosts();
+
+        // Timed Scheduling - posts run when due, cancelled ones never run
+        System.out.println("\nTimed scheduled posts:");
+        try (TimingWheelPostScheduler timedScheduler = new TimingWheelPostScheduler(10, 512, 4)) {
+            long now = System.currentTimeMillis();
+            timedScheduler.schedulePost(new SocialMediaPostCommand("Posted after 100 ms"), now + 100);
+            timedScheduler.schedulePost(new SocialMediaPostCommand("Posted after 50 ms"), now + 50);
+            ScheduledPost cancelled = timedScheduler.schedulePost(new SocialMediaPostCommand("Never posted"), now + 80);
+            cancelled.cancel();
+            Thread.sleep(300);
+        }
     }
 }
 
 /**
 Explanation:
-1. `ContentModerator` is the abstract base class for the Chain of Responsibility pattern that defines the `moderate()` method for content moderation.
-2. `LanguageModerator`, `LengthModerator`, and `SpamModerator` are concrete classes that implement moderation rules for content.
-3. `PostCommand` is the command interface that defines the `execute()` method for scheduling posts.
-4. `SocialMediaPostCommand` is the concrete implementation of the `PostCommand` interface that schedules social media posts.
-5. `PostScheduler` is the invoker class that schedules and executes posts.
-6. `SocialMediaPostingApp` is the client code that demonstrates using both Chain of Responsibility for content moderation and Command for scheduling posts.
+1. `ContentModerator` is the abstract base class for the Chain of Responsibility pattern. Each moderator's `evaluate()` returns a `ModerationVerdict`, stopping at the first blocking moderator. `moderate()` prints the verdict for one post, and `moderateBatch()` evaluates many posts in parallel.
+2. `LanguageModerator`, `LengthModerator`, and `SpamModerator` are concrete classes that implement moderation rules for content. Given a `ModerationEngine`, the language and spam moderators become views over a single scan that is passed down the chain.
+3. `ModerationEngineBuilder` compiles every rule set into one case-insensitive Aho-Corasick automaton, and `ModerationEngine.scan()` reports which `ModerationCategory` values a post matches in one pass.
+4. `PostCommand` is the command interface that defines the `execute()` method for scheduling posts.
+5. `SocialMediaPostCommand` is the concrete implementation of the `PostCommand` interface that schedules social media posts.
+6. `PostScheduler` is the invoker class that schedules and executes posts. `TimingWheelPostScheduler` schedules posts for a given time on a hashed timing wheel with O(1) schedule and cancel, and dispatches due posts to a fixed pool that bounds concurrency.
+7. `SocialMediaPostingApp` is the client code that demonstrates using both Chain of Responsibility for content moderation and Command for scheduling posts.
 */
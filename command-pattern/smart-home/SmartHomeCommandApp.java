@@ -1,11 +1,37 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.LongAdder;
 
 // Command Interface
 interface Command {
     void execute();
 }
 
+// Commands that can be stored in the compact history as (device, opcode, argument)
+interface RecordableCommand extends Command {
+    int OP_LIGHT_ON = 1;
+    int OP_LIGHT_OFF = 2;
+    int OP_SET_TEMPERATURE = 3;
+
+    Object getDevice();
+
+    int getOpcode();
+
+    int getArgument();
+}
+
 // Receiver Classes
 class Light {
     public void turnOn() {
@@ -24,7 +50,7 @@ class Thermostats {
 }
 
 // Concrete Command Classes
-class LightOnCommand implements Command {
+class LightOnCommand implements RecordableCommand {
     private Light light;
 
     public LightOnCommand(Light light) {
@@ -35,9 +61,24 @@ class LightOnCommand implements Command {
     public void execute() {
         light.turnOn();
     }
+
+    @Override
+    public Object getDevice() {
+        return light;
+    }
+
+    @Override
+    public int getOpcode() {
+        return OP_LIGHT_ON;
+    }
+
+    @Override
+    public int getArgument() {
+        return 0;
+    }
 }
 
-class LightOffCommand implements Command {
+class LightOffCommand implements RecordableCommand {
     private Light light;
 
     public LightOffCommand(Light light) {
@@ -48,9 +89,24 @@ class LightOffCommand implements Command {
     public void execute() {
         light.turnOff();
     }
+
+    @Override
+    public Object getDevice() {
+        return light;
+    }
+
+    @Override
+    public int getOpcode() {
+        return OP_LIGHT_OFF;
+    }
+
+    @Override
+    public int getArgument() {
+        return 0;
+    }
 }
 
-class SetTemperatureCommand implements Command {
+class SetTemperatureCommand implements RecordableCommand {
     private Thermostats thermostat;
     private int temperature;
 
@@ -63,21 +119,490 @@ class SetTemperatureCommand implements Command {
     public void execute() {
         thermostat.setTemperature(temperature);
     }
+
+    @Override
+    public Object getDevice() {
+        return thermostat;
+    }
+
+    @Override
+    public int getOpcode() {
+        return OP_SET_TEMPERATURE;
+    }
+
+    @Override
+    public int getArgument() {
+        return temperature;
+    }
+}
+
+// Assigns each receiver a small int id so history records hold no object references
+class DeviceRegistry {
+    private final Map<Object, Integer> ids = new IdentityHashMap<>();
+    private final List<Object> devices = new ArrayList<>();
+
+    public synchronized int idOf(Object device) {
+        Integer id = ids.get(device);
+        if (id == null) {
+            id = devices.size();
+            ids.put(device, id);
+            devices.add(device);
+        }
+        return id;
+    }
+
+    public synchronized Object device(int id) {
+        return devices.get(id);
+    }
+
+    public Command decode(int deviceId, int opcode, int argument) {
+        Object device = device(deviceId);
+        switch (opcode) {
+            case RecordableCommand.OP_LIGHT_ON:
+                return new LightOnCommand((Light) device);
+            case RecordableCommand.OP_LIGHT_OFF:
+                return new LightOffCommand((Light) device);
+            case RecordableCommand.OP_SET_TEMPERATURE:
+                return new SetTemperatureCommand((Thermostats) device, argument);
+            default:
+                throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        }
+    }
+}
+
+interface CommandRecordVisitor {
+    void visit(int deviceId, int opcode, int argument);
+}
+
+// Fixed-capacity ring of encoded commands in primitive arrays; the oldest record is overwritten when full.
+// Thread-safe: the invoker records from the caller and from dispatcher threads.
+class CommandHistory {
+    private final int[] deviceIds;
+    private final byte[] opcodes;
+    private final int[] arguments;
+    private long written;
+
+    public CommandHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.deviceIds = new int[capacity];
+        this.opcodes = new byte[capacity];
+        this.arguments = new int[capacity];
+    }
+
+    public synchronized void record(int deviceId, int opcode, int argument) {
+        int slot = (int) (written % deviceIds.length);
+        deviceIds[slot] = deviceId;
+        opcodes[slot] = (byte) opcode;
+        arguments[slot] = argument;
+        written++;
+    }
+
+    public synchronized int size() {
+        return (int) Math.min(written, deviceIds.length);
+    }
+
+    public synchronized long getTotalRecorded() {
+        return written;
+    }
+
+    // Visits the last n records, oldest first; they are copied out first so the visitor runs without the lock
+    public void forEachRecent(int n, CommandRecordVisitor visitor) {
+        int[] recentDevices;
+        byte[] recentOpcodes;
+        int[] recentArguments;
+        synchronized (this) {
+            int count = Math.min(n, size());
+            recentDevices = new int[count];
+            recentOpcodes = new byte[count];
+            recentArguments = new int[count];
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((written - count + i) % deviceIds.length);
+                recentDevices[i] = deviceIds[slot];
+                recentOpcodes[i] = opcodes[slot];
+                recentArguments[i] = arguments[slot];
+            }
+        }
+        for (int i = 0; i < recentDevices.length; i++) {
+            visitor.visit(recentDevices[i], recentOpcodes[i], recentArguments[i]);
+        }
+    }
+
+    // Counts how many of the last n records targeted the device
+    public synchronized int countForDevice(int deviceId, int n) {
+        int count = 0;
+        int recent = Math.min(n, size());
+        for (long i = written - recent; i < written; i++) {
+            if (deviceIds[(int) (i % deviceIds.length)] == deviceId) {
+                count++;
+            }
+        }
+        return count;
+    }
 }
 
 // Invoker Class
 class SmartHomeApp {
-    private List<Command> commandHistory = new ArrayList<>();
+    private static final int DEFAULT_HISTORY_CAPACITY = 1024;
+
+    private final DeviceRegistry devices = new DeviceRegistry();
+    private final CommandHistory commandHistory;
+
+    public SmartHomeApp() {
+        this(DEFAULT_HISTORY_CAPACITY);
+    }
+
+    public SmartHomeApp(int historyCapacity) {
+        this.commandHistory = new CommandHistory(historyCapacity);
+    }
 
+    // Only RecordableCommands are kept in the history
     public void executeCommand(Command command) {
         command.execute();
-        commandHistory.add(command);
+        if (command instanceof RecordableCommand) {
+            RecordableCommand recordable = (RecordableCommand) command;
+            commandHistory.record(devices.idOf(recordable.getDevice()), recordable.getOpcode(), recordable.getArgument());
+        }
+    }
+
+    // Re-executes the last n recorded commands in their original order, without recording them again
+    public void replayLast(int n) {
+        commandHistory.forEachRecent(n, (deviceId, opcode, argument) ->
+                devices.decode(deviceId, opcode, argument).execute());
+    }
+
+    public CommandHistory getCommandHistory() {
+        return commandHistory;
+    }
+
+    public DeviceRegistry getDevices() {
+        return devices;
+    }
+}
+
+// Coalescing Dispatcher - collapses bursts of commands per device to the final effective state
+class CoalescingCommandDispatcher implements AutoCloseable {
+    private final SmartHomeApp smartHomeApp;
+    private final long windowMillis;
+    private final ConcurrentHashMap<Object, RecordableCommand> pending = new ConcurrentHashMap<>();
+    // Only touched on the dispatch thread, and by close() once that thread has terminated
+    private final Map<Object, RecordableCommand> lastDispatched = new IdentityHashMap<>();
+    private final ScheduledThreadPoolExecutor dispatchThread;
+    // Submitters hold the read lock, so close() knows no submit is half-way through
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+
+    public CoalescingCommandDispatcher(SmartHomeApp smartHomeApp, long windowMillis) {
+        this.smartHomeApp = smartHomeApp;
+        this.windowMillis = windowMillis;
+        this.dispatchThread = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "command-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatchThread.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    // The first command for a device opens its window; later ones in the window replace it (last one wins).
+    // Commands that are not RecordableCommands have no known device, so they are dispatched at once and
+    // are not ordered against commands still waiting in a device's window.
+    public void submit(Command command) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Dispatcher is closed");
+            }
+            submitted.increment();
+            if (!(command instanceof RecordableCommand)) {
+                dispatchThread.execute(() -> dispatch(command));
+                return;
+            }
+            RecordableCommand recordable = (RecordableCommand) command;
+            Object device = recordable.getDevice();
+            if (pending.put(device, recordable) == null) {
+                dispatchThread.schedule(() -> flush(device), windowMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    // A final state equal to the last one sent to the device (e.g. an on/off pair) is dropped
+    private void flush(Object device) {
+        RecordableCommand command = pending.remove(device);
+        if (command == null) {
+            return;
+        }
+        RecordableCommand last = lastDispatched.get(device);
+        if (last != null && last.getOpcode() == command.getOpcode() && last.getArgument() == command.getArgument()) {
+            return;
+        }
+        lastDispatched.put(device, command);
+        dispatch(command);
+    }
+
+    private void dispatch(Command command) {
+        smartHomeApp.executeCommand(command);
+        dispatched.increment();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    // Rejects further submits, lets queued commands run, then flushes every open window on the caller.
+    // If interrupted while waiting, open windows are discarded and the interrupt flag is restored.
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        dispatchThread.shutdown();
+        try {
+            if (!dispatchThread.awaitTermination(10, TimeUnit.SECONDS)) {
+                dispatchThread.shutdownNow();
+                return;
+            }
+        } catch (InterruptedException e) {
+            dispatchThread.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (Object device : pending.keySet()) {
+            flush(device);
+        }
+    }
+}
+
+// Lock-free Executor - multi-producer rings, one consumer thread per ring
+class CommandRing {
+    private final Command[] slots;
+    // Sequence published into each slot; a slot is readable once it holds the sequence the consumer expects
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long consumed = -1;
+    // Consumer blocked in awaitPublish(), or null; publish() unparks it
+    private volatile Thread waiter;
+
+    // capacity is rounded up to a power of two
+    CommandRing(int capacity) {
+        int size = Integer.highestOneBit(((capacity - 1) << 1) | 1);
+        this.slots = new Command[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        this.mask = size - 1;
+    }
+
+    // Claims the next sequence with CAS, waiting while the ring is full
+    void publish(Command command) {
+        long sequence;
+        while (true) {
+            long current = claimed.get();
+            sequence = current + 1;
+            if (sequence - consumed > slots.length) {
+                Thread.yield();
+            } else if (claimed.compareAndSet(current, sequence)) {
+                break;
+            }
+        }
+        int index = (int) (sequence & mask);
+        slots[index] = command;
+        // A volatile store, so the waiter check below cannot be reordered ahead of it
+        published.set(index, sequence);
+        Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    // Blocks the consumer until a command is published or it is unparked. The waiter is set before the
+    // final check, so a command published in between sees it and unparks, and no wakeup is lost.
+    void awaitPublish() {
+        waiter = Thread.currentThread();
+        long next = consumed + 1;
+        if (published.get((int) (next & mask)) != next) {
+            LockSupport.park(this);
+        }
+        waiter = null;
+    }
+
+    // Runs every command published so far, in sequence order; returns how many ran.
+    // A failing command is reported and skipped, so later commands and blocked producers still progress.
+    int drain(CommandFailureHandler failureHandler) {
+        int ran = 0;
+        long next = consumed + 1;
+        int index = (int) (next & mask);
+        while (published.get(index) == next) {
+            Command command = slots[index];
+            slots[index] = null;
+            try {
+                command.execute();
+            } catch (RuntimeException e) {
+                failureHandler.onFailure(command, e);
+            } finally {
+                consumed = next;
+            }
+            ran++;
+            next++;
+            index = (int) (next & mask);
+        }
+        return ran;
+    }
+
+    boolean isEmpty() {
+        return consumed == claimed.get();
+    }
+}
+
+interface CommandFailureHandler {
+    void onFailure(Command command, RuntimeException failure);
+}
+
+// Commands for the same device always land on the same ring, so they keep their order
+class DeviceCommandExecutor implements AutoCloseable {
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    private final CommandRing[] rings;
+    private final Thread[] consumers;
+    private final LongAdder failures = new LongAdder();
+    private volatile CommandFailureHandler failureHandler = (command, failure) ->
+            System.err.println("Command " + command + " failed: " + failure);
+    // Submits in progress; close() waits for them before letting consumers finish
+    private final AtomicInteger activeSubmits = new AtomicInteger();
+    private volatile boolean accepting = true;
+    private volatile boolean running = true;
+
+    public DeviceCommandExecutor(int consumerThreads, int ringCapacity) {
+        if (consumerThreads < 1 || ringCapacity < 1) {
+            throw new IllegalArgumentException("consumerThreads and ringCapacity must be positive");
+        }
+        this.rings = new CommandRing[consumerThreads];
+        this.consumers = new Thread[consumerThreads];
+        for (int i = 0; i < consumerThreads; i++) {
+            CommandRing ring = new CommandRing(ringCapacity);
+            rings[i] = ring;
+            consumers[i] = new Thread(() -> consume(ring), "device-executor-" + i);
+            consumers[i].setDaemon(true);
+            consumers[i].start();
+        }
+    }
+
+    public void setFailureHandler(CommandFailureHandler failureHandler) {
+        this.failureHandler = failureHandler;
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public void submit(RecordableCommand command) {
+        submit(command.getDevice(), command);
+    }
+
+    public void submit(Object device, Command command) {
+        activeSubmits.incrementAndGet();
+        try {
+            if (!accepting) {
+                throw new IllegalStateException("Executor is closed");
+            }
+            int shard = (System.identityHashCode(device) & Integer.MAX_VALUE) % rings.length;
+            rings[shard].publish(command);
+        } finally {
+            activeSubmits.decrementAndGet();
+        }
+    }
+
+    private void consume(CommandRing ring) {
+        CommandFailureHandler countingHandler = (command, failure) -> {
+            failures.increment();
+            failureHandler.onFailure(command, failure);
+        };
+        int idle = 0;
+        while (running || !ring.isEmpty()) {
+            if (ring.drain(countingHandler) > 0) {
+                idle = 0;
+            } else if (++idle < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else {
+                // Idle consumers block instead of polling, so an idle executor uses no CPU
+                ring.awaitPublish();
+                idle = 0;
+            }
+        }
+    }
+
+    // Rejects new submits, runs everything already submitted, then stops the consumer threads.
+    // If interrupted while waiting, the consumers keep draining in the background and the flag is restored.
+    @Override
+    public void close() {
+        accepting = false;
+        while (activeSubmits.get() > 0) {
+            Thread.onSpinWait();
+        }
+        running = false;
+        try {
+            for (Thread consumer : consumers) {
+                LockSupport.unpark(consumer);
+                consumer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+// Benchmark - executor throughput with 1, 4 and 16 producers
+class DeviceExecutorBenchmark {
+    public static void run(int commandsPerProducer) throws InterruptedException {
+        Object[] devices = new Object[16];
+        for (int i = 0; i < devices.length; i++) {
+            devices[i] = new Object();
+        }
+        for (int producerCount : new int[] {1, 4, 16}) {
+            LongAdder executed = new LongAdder();
+            Command command = executed::increment;
+            long start = System.nanoTime();
+            try (DeviceCommandExecutor executor = new DeviceCommandExecutor(4, 1024)) {
+                Thread[] producers = new Thread[producerCount];
+                for (int p = 0; p < producerCount; p++) {
+                    int producer = p;
+                    producers[p] = new Thread(() -> {
+                        for (int i = 0; i < commandsPerProducer; i++) {
+                            executor.submit(devices[(producer + i) % devices.length], command);
+                        }
+                    });
+                    producers[p].start();
+                }
+                for (Thread producer : producers) {
+                    producer.join();
+                }
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            System.out.println(producerCount + " producers: " + executed.sum() + " commands, "
+                    + executed.sum() * 1_000_000_000L / elapsedNanos + " commands/s");
+        }
     }
 }
 
 // Client Code
 public class SmartHomeCommandApp {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         Light livingRoomLight = new Light();
         Thermostats homeThermostat = new Thermostats();
 
@@ -90,6 +615,36 @@ public class SmartHomeCommandApp {
         smartHomeApp.executeCommand(lightOn);
         smartHomeApp.executeCommand(setTemperature);
         smartHomeApp.executeCommand(lightOff);
+
+        // Compact history - replay the last two commands
+        System.out.println("\nReplaying last 2 commands:");
+        smartHomeApp.replayLast(2);
+        int thermostatId = smartHomeApp.getDevices().idOf(homeThermostat);
+        System.out.println("Thermostat commands in history: " + smartHomeApp.getCommandHistory().countForDevice(thermostatId, 10));
+
+        // Coalescing Dispatcher - a burst of commands becomes at most one call per device
+        System.out.println("\nCoalesced burst:");
+        try (CoalescingCommandDispatcher dispatcher = new CoalescingCommandDispatcher(smartHomeApp, 50)) {
+            for (int temperature = 18; temperature <= 24; temperature++) {
+                dispatcher.submit(new SetTemperatureCommand(homeThermostat, temperature));
+            }
+            dispatcher.submit(new LightOnCommand(livingRoomLight));
+            dispatcher.submit(new LightOffCommand(livingRoomLight));
+            Thread.sleep(100);
+            System.out.println("Submitted " + dispatcher.getSubmittedCount() + ", dispatched " + dispatcher.getDispatchedCount());
+        }
+
+        // Lock-free Executor - per-device ordering, devices run in parallel
+        System.out.println("\nDevice executor:");
+        Light porchLight = new Light();
+        try (DeviceCommandExecutor executor = new DeviceCommandExecutor(2, 64)) {
+            executor.submit(new LightOnCommand(porchLight));
+            executor.submit(new SetTemperatureCommand(homeThermostat, 20));
+            executor.submit(new LightOffCommand(porchLight));
+        }
+        if (Arrays.asList(args).contains("--benchmark")) {
+            DeviceExecutorBenchmark.run(200_000);
+        }
     }
 }
 
@@ -98,7 +653,9 @@ Explanation:
 1. `Command` is the command interface that defines the `execute()` method for all commands.
 2. `Light` and `Thermostat` are receiver classes that perform the actual actions.
 3. `LightOnCommand`, `LightOffCommand`, and `SetTemperatureCommand` are concrete command classes that implement the `Command` interface and perform specific actions on the receivers.
-4. `SmartHomeApp` is the invoker class that executes commands and keeps a history of executed commands.
-5. `SmartHomeCommandApp` is the client that creates commands and uses the `SmartHomeApp` to execute them.
+4. `SmartHomeApp` is the invoker class that executes commands and keeps a history of executed commands. `CommandHistory` is a fixed-capacity ring buffer that stores each `RecordableCommand` as (device id, opcode, argument) in primitive arrays, with `DeviceRegistry` mapping ids back to receivers for replay.
+5. `CoalescingCommandDispatcher` buffers commands per device for a configurable window and sends only the final state, dropping it when it matches what the device last received. Commands without a device are sent at once, unordered against open windows. `close()` rejects new submits and flushes every open window.
+6. `DeviceCommandExecutor` shards devices across `CommandRing`s, preallocated rings that many producers claim with CAS and a single consumer thread drains, so each device keeps its order while devices run in parallel. A consumer that finds its ring empty spins briefly, then parks until a producer unparks it. A command that throws is passed to the `CommandFailureHandler` and skipped, so its ring keeps draining, and submits after `close()` are rejected. `DeviceExecutorBenchmark` measures throughput with 1, 4 and 16 producers; it only runs when the app is started with `--benchmark`.
+7. `SmartHomeCommandApp` is the client that creates commands and uses the `SmartHomeApp` to execute them.
 */
 
@@ -1,4 +1,18 @@
-import java.util.Stack;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 /**
  * Command Pattern: Design an "Undo/Redo" feature for a text editor that saves each operation as a command.
@@ -7,36 +21,328 @@ import java.util.Stack;
 interface TextCommand {
     void execute();
     void undo();
+
+    // Approximate heap footprint in bytes, counted against the invoker's memory budget
+    default long estimatedSize() {
+        return 64;
+    }
+
+    // Absorbs an already executed follow-up command so both undo as one step; returns false if they cannot merge
+    default boolean mergeWith(TextCommand next) {
+        return false;
+    }
+}
+
+// Backing Store - piece table kept in a treap ordered by document position.
+// Edits copy the nodes on the path they change instead of mutating them, so a root captured by
+// snapshot() keeps describing the same text forever and can be read from another thread.
+class PieceTable {
+    // A run of chars from an inserted string; total is the length of the whole subtree.
+    // Fields are only written before the node is linked into a tree.
+    static class Piece {
+        final CharSequence buffer;
+        final int start;
+        final int length;
+        int total;
+        int priority;
+        Piece left;
+        Piece right;
+
+        Piece(CharSequence buffer, int start, int length, int priority) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+            this.total = length;
+            this.priority = priority;
+        }
+    }
+
+    private final Random priorities = new Random();
+    private Piece root;
+
+    public PieceTable() {
+    }
+
+    private PieceTable(Piece root) {
+        this.root = root;
+    }
+
+    // O(1): later edits to this table never touch the nodes the copy shares
+    public PieceTable snapshot() {
+        return new PieceTable(root);
+    }
+
+    public int length() {
+        return total(root);
+    }
+
+    public void insert(int offset, String text) {
+        checkOffset(offset);
+        if (text.isEmpty()) {
+            return;
+        }
+        Piece[] parts = split(root, offset);
+        root = merge(merge(parts[0], new Piece(text, 0, text.length(), priorities.nextInt())), parts[1]);
+    }
+
+    // Detaches the range and returns its pieces, so it can be restored without copying any text
+    public Piece delete(int offset, int length) {
+        checkOffset(offset);
+        checkOffset(offset + length);
+        Piece[] head = split(root, offset);
+        Piece[] tail = split(head[1], length);
+        root = merge(head[0], tail[1]);
+        return tail[0];
+    }
+
+    public void restore(int offset, Piece pieces) {
+        checkOffset(offset);
+        Piece[] parts = split(root, offset);
+        root = merge(merge(parts[0], pieces), parts[1]);
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+        }
+        Piece node = root;
+        while (true) {
+            int leftTotal = total(node.left);
+            if (index < leftTotal) {
+                node = node.left;
+            } else if (index < leftTotal + node.length) {
+                return node.buffer.charAt(node.start + index - leftTotal);
+            } else {
+                index -= leftTotal + node.length;
+                node = node.right;
+            }
+        }
+    }
+
+    public void appendTo(StringBuilder out, int start, int end) {
+        appendTo(root, out, start, end);
+    }
+
+    private void appendTo(Piece node, StringBuilder out, int start, int end) {
+        if (node == null || start >= end) {
+            return;
+        }
+        int leftTotal = total(node.left);
+        if (start < leftTotal) {
+            appendTo(node.left, out, start, Math.min(end, leftTotal));
+        }
+        int pieceStart = Math.max(start - leftTotal, 0);
+        int pieceEnd = Math.min(end - leftTotal, node.length);
+        if (pieceStart < pieceEnd) {
+            out.append(node.buffer, node.start + pieceStart, node.start + pieceEnd);
+        }
+        int rightOffset = leftTotal + node.length;
+        if (end > rightOffset) {
+            appendTo(node.right, out, Math.max(start - rightOffset, 0), end - rightOffset);
+        }
+    }
+
+    // Splits into the first offset chars and the rest, cutting a piece in two when the offset falls inside it
+    private Piece[] split(Piece node, int offset) {
+        if (offset <= 0) {
+            return new Piece[] {null, node};
+        }
+        if (offset >= total(node)) {
+            return new Piece[] {node, null};
+        }
+        int leftTotal = total(node.left);
+        if (offset <= leftTotal) {
+            Piece[] parts = split(node.left, offset);
+            Piece copy = copy(node);
+            copy.left = parts[1];
+            update(copy);
+            parts[1] = copy;
+            return parts;
+        }
+        if (offset >= leftTotal + node.length) {
+            Piece[] parts = split(node.right, offset - leftTotal - node.length);
+            Piece copy = copy(node);
+            copy.right = parts[0];
+            update(copy);
+            parts[0] = copy;
+            return parts;
+        }
+        int cut = offset - leftTotal;
+        // Both halves keep the node's priority, so each is a valid treap root over its side
+        Piece head = new Piece(node.buffer, node.start, cut, node.priority);
+        head.left = node.left;
+        update(head);
+        Piece tail = new Piece(node.buffer, node.start + cut, node.length - cut, node.priority);
+        tail.right = node.right;
+        update(tail);
+        return new Piece[] {head, tail};
+    }
+
+    private Piece merge(Piece left, Piece right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority >= right.priority) {
+            Piece copy = copy(left);
+            copy.right = merge(left.right, right);
+            update(copy);
+            return copy;
+        }
+        Piece copy = copy(right);
+        copy.left = merge(left, right.left);
+        update(copy);
+        return copy;
+    }
+
+    private static Piece copy(Piece node) {
+        Piece copy = new Piece(node.buffer, node.start, node.length, node.priority);
+        copy.left = node.left;
+        copy.right = node.right;
+        copy.total = node.total;
+        return copy;
+    }
+
+    public static int length(Piece pieces) {
+        return total(pieces);
+    }
+
+    private static int total(Piece node) {
+        return node == null ? 0 : node.total;
+    }
+
+    private static void update(Piece node) {
+        node.total = total(node.left) + node.length + total(node.right);
+    }
+
+    private void checkOffset(int offset) {
+        if (offset < 0 || offset > length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length());
+        }
+    }
+}
+
+// Read-only view of a document range; valid until the next edit, or forever over a PieceTable snapshot
+class TextView implements CharSequence {
+    private final PieceTable table;
+    private final int start;
+    private final int end;
+
+    TextView(PieceTable table, int start, int end) {
+        this.table = table;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return table.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new TextView(table, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(length());
+        table.appendTo(out, start, end);
+        return out.toString();
+    }
+}
+
+// Notified of every change to the editor's text, whether from execute or undo
+interface EditListener {
+    void onInsert(int offset, CharSequence text);
+    void onDelete(int offset, int length);
 }
 
 // Receiver Class
 class TextEditor {
-    private StringBuilder text = new StringBuilder();
+    private PieceTable text = new PieceTable();
+    private EditListener editListener;
+
+    public void setEditListener(EditListener editListener) {
+        this.editListener = editListener;
+    }
 
     public void appendText(String newText) {
-        text.append(newText);
+        insertText(text.length(), newText);
     }
 
     public void deleteText(int length) {
         int start = text.length() - length;
         if (start >= 0) {
-            text.delete(start, text.length());
+            deleteRange(start, length);
+        }
+    }
+
+    public void insertText(int offset, String newText) {
+        text.insert(offset, newText);
+        if (editListener != null) {
+            editListener.onInsert(offset, newText);
+        }
+    }
+
+    public PieceTable.Piece deleteRange(int offset, int length) {
+        PieceTable.Piece deleted = text.delete(offset, length);
+        if (editListener != null) {
+            editListener.onDelete(offset, length);
+        }
+        return deleted;
+    }
+
+    public void restoreRange(int offset, PieceTable.Piece deleted) {
+        text.restore(offset, deleted);
+        if (editListener != null) {
+            editListener.onInsert(offset, getText(offset, offset + PieceTable.length(deleted)));
         }
     }
 
+    public int length() {
+        return text.length();
+    }
+
+    public CharSequence getText(int start, int end) {
+        if (start < 0 || start > end || end > text.length()) {
+            throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + text.length());
+        }
+        return new TextView(text, start, end);
+    }
+
     public String getText() {
-        return text.toString();
+        return getText(0, text.length()).toString();
+    }
+
+    // Immutable view of the current text, safe to read on another thread while editing continues
+    public CharSequence snapshotText() {
+        PieceTable frozen = text.snapshot();
+        return new TextView(frozen, 0, frozen.length());
     }
 }
 
 // Concrete Command Classes
 class AppendTextCommand implements TextCommand {
+    // Caps how much typing one undo step covers
+    static final int MAX_MERGED_LENGTH = 1024;
+
     private TextEditor textEditor;
     private String textToAppend;
+    // Only single-keystroke commands (and runs merged from them) merge
+    private final boolean keystroke;
 
     public AppendTextCommand(TextEditor textEditor, String textToAppend) {
         this.textEditor = textEditor;
         this.textToAppend = textToAppend;
+        this.keystroke = textToAppend.length() == 1;
     }
 
     @Override
@@ -48,17 +354,132 @@ class AppendTextCommand implements TextCommand {
     public void undo() {
         textEditor.deleteText(textToAppend.length());
     }
+
+    @Override
+    public long estimatedSize() {
+        return 48 + 2L * textToAppend.length();
+    }
+
+    @Override
+    public boolean mergeWith(TextCommand next) {
+        if (!(next instanceof AppendTextCommand)) {
+            return false;
+        }
+        AppendTextCommand append = (AppendTextCommand) next;
+        if (!keystroke || !append.keystroke || append.textEditor != textEditor
+                || textToAppend.length() + append.textToAppend.length() > MAX_MERGED_LENGTH) {
+            return false;
+        }
+        textToAppend = textToAppend + append.textToAppend;
+        return true;
+    }
+}
+
+class InsertTextCommand implements TextCommand {
+    private TextEditor textEditor;
+    private int offset;
+    private String textToInsert;
+    private final boolean keystroke;
+
+    public InsertTextCommand(TextEditor textEditor, int offset, String textToInsert) {
+        this.textEditor = textEditor;
+        this.offset = offset;
+        this.textToInsert = textToInsert;
+        this.keystroke = textToInsert.length() == 1;
+    }
+
+    @Override
+    public void execute() {
+        textEditor.insertText(offset, textToInsert);
+    }
+
+    @Override
+    public void undo() {
+        textEditor.deleteRange(offset, textToInsert.length());
+    }
+
+    @Override
+    public long estimatedSize() {
+        return 48 + 2L * textToInsert.length();
+    }
+
+    // Merges keystrokes that continue right where this insert ended
+    @Override
+    public boolean mergeWith(TextCommand next) {
+        if (!(next instanceof InsertTextCommand)) {
+            return false;
+        }
+        InsertTextCommand insert = (InsertTextCommand) next;
+        if (!keystroke || !insert.keystroke || insert.textEditor != textEditor || insert.offset != offset + textToInsert.length()
+                || textToInsert.length() + insert.textToInsert.length() > AppendTextCommand.MAX_MERGED_LENGTH) {
+            return false;
+        }
+        textToInsert = textToInsert + insert.textToInsert;
+        return true;
+    }
+}
+
+class DeleteRangeCommand implements TextCommand {
+    private TextEditor textEditor;
+    private int offset;
+    private int length;
+    private PieceTable.Piece deleted;
+
+    public DeleteRangeCommand(TextEditor textEditor, int offset, int length) {
+        this.textEditor = textEditor;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public void execute() {
+        deleted = textEditor.deleteRange(offset, length);
+    }
+
+    @Override
+    public void undo() {
+        textEditor.restoreRange(offset, deleted);
+        deleted = null;
+    }
 }
 
 // Invoker Class
 class TextEditorInvoker {
-    private Stack<TextCommand> commandHistory = new Stack<>();
-    private Stack<TextCommand> redoStack = new Stack<>();
+    private static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    // Newest entries at the head; undo history is evicted from the tail once over budget
+    private final Deque<TextCommand> commandHistory = new ArrayDeque<>();
+    private final Deque<TextCommand> redoStack = new ArrayDeque<>();
+    private final long memoryBudget;
+    private long memoryUsed;
+
+    public TextEditorInvoker() {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    public TextEditorInvoker(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
 
     public void executeCommand(TextCommand command) {
         command.execute();
-        commandHistory.push(command);
+        boolean canMerge = redoStack.isEmpty();
+        for (TextCommand undone : redoStack) {
+            memoryUsed -= undone.estimatedSize();
+        }
         redoStack.clear();
+        TextCommand previous = commandHistory.peekFirst();
+        if (canMerge && previous != null) {
+            long previousSize = previous.estimatedSize();
+            if (previous.mergeWith(command)) {
+                memoryUsed += previous.estimatedSize() - previousSize;
+                evictOverBudget();
+                return;
+            }
+        }
+        commandHistory.push(command);
+        memoryUsed += command.estimatedSize();
+        evictOverBudget();
     }
 
     public void undoCommand() {
@@ -76,11 +497,391 @@ class TextEditorInvoker {
             commandHistory.push(command);
         }
     }
+
+    public int getUndoDepth() {
+        return commandHistory.size();
+    }
+
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    // The newest entry is always kept so the last edit can be undone
+    private void evictOverBudget() {
+        while (memoryUsed > memoryBudget && commandHistory.size() > 1) {
+            memoryUsed -= commandHistory.removeLast().estimatedSize();
+        }
+    }
+}
+
+// Persistence - memory-mapped edit journal with periodic snapshots
+/*
+ * Directory layout: snapshot.bin holds [long generation][int length][chars] and journal-<n>.bin holds records
+ * [int bodyLength][int crc32][byte op][int offset][int length][chars, inserts only]. Recovery loads the snapshot
+ * and replays journals from its generation onwards. An empty record ends a journal cleanly; a torn or corrupt one
+ * ends recovery, so no later generation is applied on top of a lost tail. A generation is forced before the next
+ * one takes its first record, so a later generation on disk always means every earlier one is complete.
+ *
+ * Apart from that force, the edit thread only writes into an already mapped buffer. File work happens on the
+ * edit-journal thread:
+ * group commits, mapping a larger region before the current one fills up, opening the next generation ahead
+ * of time, and writing snapshots from an immutable PieceTable view.
+ */
+class EditJournal implements EditListener, AutoCloseable {
+    private static final byte OP_INSERT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int INITIAL_JOURNAL_BYTES = 1 << 20;
+    private static final int COPY_CHUNK_CHARS = 32 << 10;
+
+    // A journal file and its current mapping
+    private static class Generation {
+        final long number;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        Generation(long number, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final TextEditor editor;
+    private final int snapshotEveryRecords;
+    // Runs group commits, growth, generation setup and snapshot writes, in submission order
+    private final ScheduledExecutorService background;
+    private final CRC32 crc = new CRC32();
+    // Owned by the edit thread
+    private Generation current;
+    private boolean growRequested;
+    private boolean prepareRequested;
+    private int recordsSinceSnapshot;
+    // Handed from the background thread to the edit thread
+    private volatile MappedByteBuffer journal;
+    private volatile Generation grown;
+    private volatile Generation prepared;
+    private volatile boolean dirty;
+    private volatile IOException backgroundFailure;
+
+    private EditJournal(Path directory, TextEditor editor, int snapshotEveryRecords, long groupCommitMillis) {
+        this.directory = directory;
+        this.editor = editor;
+        this.snapshotEveryRecords = snapshotEveryRecords;
+        this.background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edit-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        background.scheduleWithFixedDelay(this::groupCommit, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Recovers any saved state into the editor, then journals every later edit
+    public static EditJournal open(Path directory, TextEditor editor, int snapshotEveryRecords, long groupCommitMillis)
+            throws IOException {
+        Files.createDirectories(directory);
+        EditJournal journal = new EditJournal(directory, editor, snapshotEveryRecords, groupCommitMillis);
+        editor.setEditListener(null);
+        long generation = journal.loadSnapshot();
+        while (Files.exists(journal.journalPath(generation))) {
+            long tornAt = journal.replay(journal.journalPath(generation));
+            generation++;
+            if (tornAt >= 0) {
+                journal.discardFrom(generation - 1, tornAt);
+                break;
+            }
+        }
+        journal.switchTo(journal.openGeneration(generation));
+        journal.requestPrepare();
+        editor.setEditListener(journal);
+        return journal;
+    }
+
+    @Override
+    public void onInsert(int offset, CharSequence text) {
+        ByteBuffer record = reserve(9 + 2 * text.length());
+        int bodyStart = record.position();
+        record.put(OP_INSERT).putInt(offset).putInt(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            record.putChar(text.charAt(i));
+        }
+        commitRecord(record, bodyStart);
+    }
+
+    @Override
+    public void onDelete(int offset, int length) {
+        ByteBuffer record = reserve(9);
+        int bodyStart = record.position();
+        record.put(OP_DELETE).putInt(offset).putInt(length);
+        commitRecord(record, bodyStart);
+    }
+
+    // Switches new edits to the pre-opened next generation and writes the current text in the background.
+    // Returns false, leaving edits in the current generation, if the next one is not ready yet.
+    public boolean snapshot() {
+        Generation next = prepared;
+        if (next == null) {
+            requestPrepare();
+            return false;
+        }
+        prepared = null;
+        prepareRequested = false;
+        CharSequence text = editor.snapshotText();
+        Generation previous = current;
+        // Forced before the next generation takes a record; group commits keep this to the last few pages
+        journal.force();
+        switchTo(next);
+        recordsSinceSnapshot = 0;
+        background.execute(() -> {
+            try {
+                previous.channel.close();
+                writeSnapshot(next.number, text);
+                for (long old = next.number - 1; Files.deleteIfExists(journalPath(old)); old--) {
+                    // journals older than the snapshot are no longer needed
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+        requestPrepare();
+        return true;
+    }
+
+    private void switchTo(Generation generation) {
+        current = generation;
+        journal = generation.buffer;
+        grown = null;
+        growRequested = false;
+    }
+
+    private ByteBuffer reserve(int bodyBytes) {
+        MappedByteBuffer buffer = journal;
+        int needed = HEADER_BYTES + bodyBytes + HEADER_BYTES;
+        Generation larger = grown;
+        if (larger != null && larger.channel == current.channel && larger.buffer.capacity() > buffer.capacity()) {
+            // Both mappings share the file's pages, so records written through the old one stay visible
+            larger.buffer.position(buffer.position());
+            journal = larger.buffer;
+            buffer = larger.buffer;
+            grown = null;
+            growRequested = false;
+        } else if (larger != null) {
+            // Left over from a request the inline path below already outgrew
+            grown = null;
+        }
+        if (buffer.remaining() < needed) {
+            // Only reached when a record outruns background growth, e.g. one huge insert
+            try {
+                long size = Math.max((long) buffer.capacity() * 2, buffer.position() + 2L * needed);
+                MappedByteBuffer resized = current.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                resized.position(buffer.position());
+                journal = resized;
+                buffer = resized;
+                // Any pending background mapping is now smaller than this one; let growth be requested again
+                grown = null;
+                growRequested = false;
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot grow edit journal", e);
+            }
+        } else if (!growRequested && buffer.position() + needed > buffer.capacity() / 2) {
+            growRequested = true;
+            Generation target = current;
+            long size = (long) buffer.capacity() * 2;
+            background.execute(() -> {
+                try {
+                    grown = new Generation(target.number, target.channel,
+                            target.channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+        }
+        buffer.position(buffer.position() + HEADER_BYTES);
+        return buffer;
+    }
+
+    // The length is written last, so a record only counts once its body and checksum are in place
+    private void commitRecord(ByteBuffer record, int bodyStart) {
+        int bodyEnd = record.position();
+        ByteBuffer body = record.duplicate();
+        body.position(bodyStart).limit(bodyEnd);
+        crc.reset();
+        crc.update(body);
+        record.putInt(bodyStart - 4, (int) crc.getValue());
+        record.putInt(bodyStart - HEADER_BYTES, bodyEnd - bodyStart);
+        dirty = true;
+        if (++recordsSinceSnapshot >= snapshotEveryRecords) {
+            snapshot();
+        }
+    }
+
+    private void requestPrepare() {
+        if (prepareRequested) {
+            return;
+        }
+        prepareRequested = true;
+        long number = current.number + 1;
+        background.execute(() -> {
+            try {
+                prepared = openGeneration(number);
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    private void groupCommit() {
+        if (dirty) {
+            dirty = false;
+            journal.force();
+        }
+    }
+
+    private void fail(IOException e) {
+        if (backgroundFailure == null) {
+            backgroundFailure = e;
+        }
+    }
+
+    private Generation openGeneration(long number) throws IOException {
+        FileChannel channel = FileChannel.open(journalPath(number), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new Generation(number, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_JOURNAL_BYTES));
+    }
+
+    // Returns -1 if the journal ended cleanly, or the offset of the first torn or corrupt record
+    private long replay(Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            StringBuilder text = new StringBuilder();
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int recordStart = buffer.position();
+                int bodyLength = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (bodyLength == 0) {
+                    return -1;
+                }
+                if (bodyLength < 0 || bodyLength > buffer.remaining()) {
+                    return recordStart;
+                }
+                ByteBuffer body = buffer.slice();
+                body.limit(bodyLength);
+                crc.reset();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    return recordStart;
+                }
+                byte op = body.get();
+                int offset = body.getInt();
+                int length = body.getInt();
+                if (op == OP_INSERT) {
+                    text.setLength(0);
+                    for (int i = 0; i < length; i++) {
+                        text.append(body.getChar());
+                    }
+                    editor.insertText(offset, text.toString());
+                } else {
+                    editor.deleteRange(offset, length);
+                }
+                buffer.position(buffer.position() + bodyLength);
+            }
+            return -1;
+        }
+    }
+
+    // Cuts a torn journal back to its last good record and deletes every later generation, so the next
+    // recovery replays the same prefix and then the edits made after this one
+    private void discardFrom(long tornGeneration, long validBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalPath(tornGeneration), StandardOpenOption.WRITE)) {
+            channel.truncate(validBytes);
+            channel.force(true);
+        }
+        for (long later = tornGeneration + 1; Files.deleteIfExists(journalPath(later)); later++) {
+            // edits in these depended on the lost tail
+        }
+    }
+
+    private long loadSnapshot() throws IOException {
+        Path path = directory.resolve("snapshot.bin");
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            long snapshotGeneration = buffer.getLong();
+            int length = buffer.getInt();
+            StringBuilder text = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                text.append(buffer.getChar());
+            }
+            editor.appendText(text.toString());
+            return snapshotGeneration;
+        }
+    }
+
+    // Written to a temp file, synced and atomically renamed, then the directory is synced so the rename
+    // itself survives a crash; a crash leaves either the old or the new snapshot
+    private void writeSnapshot(long snapshotGeneration, CharSequence text) throws IOException {
+        Path temp = directory.resolve("snapshot.tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(12 + 2 * COPY_CHUNK_CHARS);
+            buffer.putLong(snapshotGeneration).putInt(text.length());
+            for (int start = 0; start < text.length() || buffer.position() > 0; start += COPY_CHUNK_CHARS) {
+                int end = Math.min(start + COPY_CHUNK_CHARS, text.length());
+                if (start < end) {
+                    String chunk = text.subSequence(start, end).toString();
+                    for (int i = 0; i < chunk.length(); i++) {
+                        buffer.putChar(chunk.charAt(i));
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            out.force(true);
+        }
+        Files.move(temp, directory.resolve("snapshot.bin"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+    }
+
+    private Path journalPath(long journalGeneration) {
+        return directory.resolve("journal-" + journalGeneration + ".bin");
+    }
+
+    // Throws the first failure of background work (growth, snapshot or generation setup), if any.
+    // If interrupted while waiting for that work, the journal is still forced and the flag is restored.
+    @Override
+    public void close() throws IOException {
+        editor.setEditListener(null);
+        background.shutdown();
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.force();
+        current.channel.close();
+        Generation unused = prepared;
+        if (unused != null) {
+            unused.channel.close();
+            Files.deleteIfExists(journalPath(unused.number));
+        }
+        if (backgroundFailure != null) {
+            throw backgroundFailure;
+        }
+    }
 }
 
 // Client Code
 public class Texteditor {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         TextEditor textEditor = new TextEditor();
         TextEditorInvoker invoker = new TextEditorInvoker();
 
@@ -98,14 +899,54 @@ public class Texteditor {
 
         invoker.redoCommand();
         System.out.println("After redo: " + textEditor.getText());
+
+        invoker.executeCommand(new InsertTextCommand(textEditor, 6, "Big "));
+        System.out.println("After insert: " + textEditor.getText());
+
+        invoker.executeCommand(new DeleteRangeCommand(textEditor, 0, 6));
+        System.out.println("After delete: " + textEditor.getText());
+
+        invoker.undoCommand();
+        System.out.println("After undo: " + textEditor.getText() + " (view: " + textEditor.getText(6, 9) + ")");
+
+        // Keystroke-sized appends merge into one undo step
+        for (char c : " Bye".toCharArray()) {
+            invoker.executeCommand(new AppendTextCommand(textEditor, String.valueOf(c)));
+        }
+        System.out.println("After typing: " + textEditor.getText() + " (undo depth " + invoker.getUndoDepth() + ")");
+        invoker.undoCommand();
+        System.out.println("After undo: " + textEditor.getText());
+
+        // Persistence - journal edits, then recover them into a fresh editor
+        Path journalDirectory = Files.createTempDirectory("editor-journal");
+        TextEditor journaledEditor = new TextEditor();
+        TextEditorInvoker journaledInvoker = new TextEditorInvoker();
+        EditJournal journal = EditJournal.open(journalDirectory, journaledEditor, 3, 5);
+        try (journal) {
+            journaledInvoker.executeCommand(new AppendTextCommand(journaledEditor, "Saved "));
+            journaledInvoker.executeCommand(new AppendTextCommand(journaledEditor, "to disk"));
+            journaledInvoker.executeCommand(new InsertTextCommand(journaledEditor, 0, "Text "));
+            journaledInvoker.executeCommand(new AppendTextCommand(journaledEditor, "!"));
+            journaledInvoker.undoCommand();
+        }
+        TextEditor recoveredEditor = new TextEditor();
+        EditJournal recoveryJournal = EditJournal.open(journalDirectory, recoveredEditor, 1000, 5);
+        try (recoveryJournal) {
+            System.out.println("Recovered: " + recoveredEditor.getText());
+        }
+        for (java.io.File file : journalDirectory.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(journalDirectory);
     }
 }
 
 /**
 Explanation:
 1. `Command` is the command interface that defines `execute()` and `undo()` methods for all commands.
-2. `TextEditor` is the receiver class that performs the actual text editing operations.
-3. `AppendTextCommand` is a concrete command class that implements the `Command` interface to append text and provides an undo operation to delete the appended text.
-4. `TextEditorInvoker` is the invoker class that executes commands, maintains a history for undo, and provides a stack for redo operations.
-5. `TextEditorApp` is the client that creates commands and uses the invoker to execute, undo, and redo them.
+2. `TextEditor` is the receiver class that performs the actual text editing operations. Its text lives in a `PieceTable` held in a treap, so edits at any offset are O(log n) and `getText(start, end)` returns a `TextView` without copying the document.
+3. `AppendTextCommand` is a concrete command class that implements the `Command` interface to append text and provides an undo operation to delete the appended text. `InsertTextCommand` and `DeleteRangeCommand` edit at arbitrary offsets; a delete keeps the detached pieces so undo restores them without copying text.
+4. `TextEditorInvoker` is the invoker class that executes commands, maintains a history for undo, and provides a stack for redo operations. Both are `ArrayDeque`s; consecutive single-keystroke appends or inserts merge into one entry, and the oldest entries are evicted once the estimated history size exceeds the memory budget.
+5. `EditJournal` listens to every text change, including undo, and appends it as a checksummed binary record to a memory-mapped journal that a background thread forces to disk in groups. It periodically snapshots the text and starts a new journal generation, so recovery loads the latest snapshot and replays only the journals written after it. Recovery stops at the first torn or corrupt record and discards every later generation, and each generation is forced before the next takes a record, so replay never applies edits on top of a lost tail. Apart from that force, the edit path never touches files: the journal thread maps larger regions and opens the next generation ahead of time, and writes snapshots from an O(1) immutable view of the persistent piece table.
+6. `TextEditorApp` is the client that creates commands and uses the invoker to execute, undo, and redo them.
 */
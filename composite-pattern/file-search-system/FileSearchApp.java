@@ -1,11 +1,145 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Relative cost of evaluating a criteria; cheaper criteria run first inside composites
+enum CriteriaCost {
+    NAME,
+    ATTRIBUTES
+}
+
+// Per-file evaluation context: the name is lower-cased once and attributes are read at most once
+class FileContext {
+    private final File file;
+    private String lowerCaseName;
+    private long size;
+    private long lastModifiedMillis;
+    private boolean attributesRead;
+
+    public FileContext(File file) {
+        this.file = file;
+    }
+
+    // Attributes already read by the traversal are reused, saving the stat call
+    public FileContext(File file, BasicFileAttributes attributes) {
+        this.file = file;
+        if (attributes != null) {
+            setAttributes(attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    // For metadata that comes from an index rather than the filesystem
+    public FileContext(File file, String lowerCaseName, long size, long lastModifiedMillis) {
+        this.file = file;
+        this.lowerCaseName = lowerCaseName;
+        setAttributes(size, lastModifiedMillis);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getLowerCaseName() {
+        if (lowerCaseName == null) {
+            lowerCaseName = file.getName().toLowerCase();
+        }
+        return lowerCaseName;
+    }
+
+    // Like File.length() and File.lastModified(), these return 0 if the file cannot be read
+    public long size() {
+        readAttributes();
+        return size;
+    }
+
+    public long lastModifiedMillis() {
+        readAttributes();
+        return lastModifiedMillis;
+    }
+
+    private void setAttributes(long size, long lastModifiedMillis) {
+        this.size = size;
+        this.lastModifiedMillis = lastModifiedMillis;
+        this.attributesRead = true;
+    }
+
+    private void readAttributes() {
+        if (!attributesRead) {
+            attributesRead = true;
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                size = attributes.size();
+                lastModifiedMillis = attributes.lastModifiedTime().toMillis();
+            } catch (IOException | SecurityException e) {
+                // size and lastModifiedMillis stay 0
+            }
+        }
+    }
+}
 
 // Abstract base interface for file criteria
 interface FileCriteria{
     boolean meetsCriteria(File file);
+
+    default boolean meetsCriteria(FileContext context) {
+        return meetsCriteria(context.getFile());
+    }
+
+    // Criteria that only look at the File are assumed to read its attributes
+    default CriteriaCost cost() {
+        return CriteriaCost.ATTRIBUTES;
+    }
+
+    // Indexed paths that can possibly match, or null if every indexed file has to be checked
+    default Set<String> indexCandidates(FileIndex index) {
+        return null;
+    }
 }
 
 // Concrete implementation for name-based filtering
@@ -18,7 +152,22 @@ class NameCriteria implements FileCriteria {
 
     @Override
     public boolean meetsCriteria(File file) {
-        return file.getName().toLowerCase().contains(pattern);
+        return meetsCriteria(new FileContext(file));
+    }
+
+    @Override
+    public boolean meetsCriteria(FileContext context) {
+        return context.getLowerCaseName().contains(pattern);
+    }
+
+    @Override
+    public CriteriaCost cost() {
+        return CriteriaCost.NAME;
+    }
+
+    @Override
+    public Set<String> indexCandidates(FileIndex index) {
+        return index.pathsWithNameContaining(pattern);
     }
 }
 
@@ -34,7 +183,12 @@ class SizeCriteria implements FileCriteria {
 
     @Override
     public boolean meetsCriteria(File file) {
-        long fileSize = file.length();
+        return meetsCriteria(new FileContext(file));
+    }
+
+    @Override
+    public boolean meetsCriteria(FileContext context) {
+        long fileSize = context.size();
 
         if (minSize != null && fileSize < minSize) {
             return false;
@@ -52,14 +206,124 @@ class SizeCriteria implements FileCriteria {
 class AndCriteria implements FileCriteria {
     private List<FileCriteria> criteriaList;
 
+    // Children are ordered cheapest first, so name checks can reject a file before its attributes are read
     public AndCriteria(FileCriteria... criteria) {
-        this.criteriaList = Arrays.asList(criteria);
+        this.criteriaList = CompositeCriteriaSupport.sortByCost(criteria);
+    }
+
+    @Override
+    public boolean meetsCriteria(File file) {
+        return meetsCriteria(new FileContext(file));
+    }
+
+    @Override
+    public boolean meetsCriteria(FileContext context) {
+        for (FileCriteria criteria : criteriaList) {
+            if (!criteria.meetsCriteria(context)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Set<String> indexCandidates(FileIndex index) {
+        Set<String> candidates = null;
+        for (FileCriteria criteria : criteriaList) {
+            Set<String> narrowed = criteria.indexCandidates(index);
+            if (narrowed != null) {
+                candidates = candidates == null ? narrowed : FileIndex.intersect(candidates, narrowed);
+            }
+        }
+        return candidates;
+    }
+
+    @Override
+    public CriteriaCost cost() {
+        return CompositeCriteriaSupport.maxCost(criteriaList);
+    }
+}
+
+class OrCriteria implements FileCriteria {
+    private List<FileCriteria> criteriaList;
+
+    public OrCriteria(FileCriteria... criteria) {
+        this.criteriaList = CompositeCriteriaSupport.sortByCost(criteria);
+    }
+
+    @Override
+    public boolean meetsCriteria(File file) {
+        return meetsCriteria(new FileContext(file));
+    }
+
+    @Override
+    public boolean meetsCriteria(FileContext context) {
+        for (FileCriteria criteria : criteriaList) {
+            if (criteria.meetsCriteria(context)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Set<String> indexCandidates(FileIndex index) {
+        Set<String> candidates = new HashSet<>();
+        for (FileCriteria criteria : criteriaList) {
+            Set<String> narrowed = criteria.indexCandidates(index);
+            if (narrowed == null) {
+                return null;
+            }
+            candidates.addAll(narrowed);
+        }
+        return candidates;
+    }
+
+    @Override
+    public CriteriaCost cost() {
+        return CompositeCriteriaSupport.maxCost(criteriaList);
+    }
+}
+
+class NotCriteria implements FileCriteria {
+    private FileCriteria criteria;
+
+    public NotCriteria(FileCriteria criteria) {
+        this.criteria = criteria;
     }
 
     @Override
     public boolean meetsCriteria(File file) {
-        return criteriaList.stream()
-                .allMatch(criteria -> criteria.meetsCriteria(file));
+        return meetsCriteria(new FileContext(file));
+    }
+
+    @Override
+    public boolean meetsCriteria(FileContext context) {
+        return !criteria.meetsCriteria(context);
+    }
+
+    @Override
+    public CriteriaCost cost() {
+        return criteria.cost();
+    }
+}
+
+class CompositeCriteriaSupport {
+    // Stable sort, so criteria of equal cost keep the order they were given in
+    static List<FileCriteria> sortByCost(FileCriteria... criteria) {
+        List<FileCriteria> sorted = new ArrayList<>(Arrays.asList(criteria));
+        sorted.sort(Comparator.comparing(FileCriteria::cost));
+        return sorted;
+    }
+
+    static CriteriaCost maxCost(List<FileCriteria> criteriaList) {
+        CriteriaCost max = CriteriaCost.NAME;
+        for (FileCriteria criteria : criteriaList) {
+            if (criteria.cost().compareTo(max) > 0) {
+                max = criteria.cost();
+            }
+        }
+        return max;
     }
 }
 
@@ -73,8 +337,13 @@ class ModifiedTimeCriteria implements FileCriteria {
 
     @Override
     public boolean meetsCriteria(File file) {
+        return meetsCriteria(new FileContext(file));
+    }
+
+    @Override
+    public boolean meetsCriteria(FileContext context) {
         long currentTime = System.currentTimeMillis();
-        return (currentTime - file.lastModified()) > olderThan;
+        return (currentTime - context.lastModifiedMillis()) > olderThan;
     }
 }
 
@@ -87,21 +356,625 @@ class FileTypeCriteria implements FileCriteria {
 
     @Override
     public boolean meetsCriteria(File file) {
-        String fileName = file.getName();
+        return meetsCriteria(new FileContext(file));
+    }
+
+    @Override
+    public boolean meetsCriteria(FileContext context) {
+        String fileName = context.getLowerCaseName();
         return allowedExtensions.stream()
-                .anyMatch(ext -> fileName.toLowerCase().endsWith(ext.toLowerCase()));
+                .anyMatch(ext -> fileName.endsWith(ext.toLowerCase()));
+    }
+
+    @Override
+    public CriteriaCost cost() {
+        return CriteriaCost.NAME;
+    }
+
+    // Only plain extensions such as ".txt" map onto the index; anything else falls back to checking every file
+    @Override
+    public Set<String> indexCandidates(FileIndex index) {
+        Set<String> candidates = new HashSet<>();
+        for (String ext : allowedExtensions) {
+            if (!ext.startsWith(".") || ext.lastIndexOf('.') != 0) {
+                return null;
+            }
+            candidates.addAll(index.pathsWithExtension(ext.substring(1).toLowerCase()));
+        }
+        return candidates;
+    }
+}
+
+// Which directory entries a search reports, shared by every traversal so they all return the same files.
+// Links are not followed into directories (so link cycles cannot loop forever); links to anything else are reported.
+final class SearchEntries {
+    private SearchEntries() {
+    }
+
+    // Attributes of the entry itself rather than a link target, or null if it cannot be read
+    static BasicFileAttributes readAttributes(Path entry) {
+        try {
+            return Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    static boolean isReported(Path entry, BasicFileAttributes attributes) {
+        return !attributes.isDirectory() && !(attributes.isSymbolicLink() && Files.isDirectory(entry));
+    }
+
+    // A link's own attributes describe the link, so its target is read on demand instead
+    static FileContext context(File file, BasicFileAttributes attributes) {
+        return attributes.isSymbolicLink() ? new FileContext(file) : new FileContext(file, attributes);
+    }
+}
+
+// Persistent file index: name trigrams and extensions map to paths, kept current through a WatchService.
+// Only each file's path, size and modified time are saved; the trigram and extension maps are rebuilt on load.
+class FileIndex implements AutoCloseable {
+    private static final int FORMAT_MAGIC = 0x46494458;
+    private static final int FORMAT_VERSION = 1;
+
+    static class Entry {
+        final String path;
+        final String lowerCaseName;
+        final String extension;
+        final long size;
+        final long lastModifiedMillis;
+
+        Entry(String path, long size, long lastModifiedMillis) {
+            this.path = path;
+            this.lowerCaseName = new File(path).getName().toLowerCase();
+            int dot = lowerCaseName.lastIndexOf('.');
+            this.extension = dot < 0 ? "" : lowerCaseName.substring(dot + 1);
+            this.size = size;
+            this.lastModifiedMillis = lastModifiedMillis;
+        }
+    }
+
+    private final Path root;
+    private final Path indexFile;
+    // Sorted by path, so a deleted directory's entries form one contiguous range
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, Set<String>> trigrams = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> extensions = new ConcurrentHashMap<>();
+    private final WatchService watchService;
+    private final ConcurrentHashMap<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private Thread watchThread;
+
+    private FileIndex(Path root, Path indexFile) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.indexFile = indexFile;
+        this.watchService = root.getFileSystem().newWatchService();
+    }
+
+    // Loads a saved index and reconciles it in the background, or builds a new one before returning
+    public static FileIndex open(Path root, Path indexFile) throws IOException {
+        FileIndex index = new FileIndex(root, indexFile);
+        boolean loaded = index.load();
+        if (!loaded) {
+            index.walk(index.root);
+        }
+        index.watchThread = new Thread(() -> index.watch(loaded), "file-index-watcher");
+        index.watchThread.setDaemon(true);
+        index.watchThread.start();
+        return index;
+    }
+
+    public List<File> search(FileCriteria criteria) {
+        return searchStream(criteria).collect(Collectors.toList());
+    }
+
+    public Stream<File> searchStream(FileCriteria criteria) {
+        return searchStream(criteria, () -> false);
+    }
+
+    // Stops scanning entries once cancelled returns true
+    public Stream<File> searchStream(FileCriteria criteria, BooleanSupplier cancelled) {
+        Set<String> candidates = criteria.indexCandidates(this);
+        Collection<String> paths = candidates != null ? candidates : entries.keySet();
+        return paths.stream()
+                .takeWhile(path -> !cancelled.getAsBoolean())
+                .map(entries::get)
+                .filter(entry -> entry != null && criteria.meetsCriteria(
+                        new FileContext(new File(entry.path), entry.lowerCaseName, entry.size, entry.lastModifiedMillis)))
+                .map(entry -> new File(entry.path));
+    }
+
+    // Null when the pattern is too short to have a trigram
+    public Set<String> pathsWithNameContaining(String lowerCasePattern) {
+        if (lowerCasePattern.length() < 3) {
+            return null;
+        }
+        Set<String> candidates = null;
+        for (int i = 0; i + 3 <= lowerCasePattern.length(); i++) {
+            Set<String> paths = trigrams.get(trigram(lowerCasePattern, i));
+            if (paths == null) {
+                return Collections.emptySet();
+            }
+            candidates = candidates == null ? paths : intersect(candidates, paths);
+        }
+        return candidates;
+    }
+
+    public Set<String> pathsWithExtension(String lowerCaseExtension) {
+        return extensions.getOrDefault(lowerCaseExtension, Collections.emptySet());
+    }
+
+    static Set<String> intersect(Set<String> a, Set<String> b) {
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        Set<String> result = new HashSet<>();
+        for (String path : smaller) {
+            if (larger.contains(path)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    private static long trigram(String name, int i) {
+        return ((long) name.charAt(i) << 32) | ((long) name.charAt(i + 1) << 16) | name.charAt(i + 2);
+    }
+
+    private void put(Entry entry) {
+        Entry previous = entries.put(entry.path, entry);
+        if (previous != null) {
+            return;
+        }
+        for (int i = 0; i + 3 <= entry.lowerCaseName.length(); i++) {
+            trigrams.computeIfAbsent(trigram(entry.lowerCaseName, i), key -> ConcurrentHashMap.newKeySet()).add(entry.path);
+        }
+        extensions.computeIfAbsent(entry.extension, key -> ConcurrentHashMap.newKeySet()).add(entry.path);
+    }
+
+    private void remove(String path) {
+        Entry entry = entries.remove(path);
+        if (entry == null) {
+            return;
+        }
+        for (int i = 0; i + 3 <= entry.lowerCaseName.length(); i++) {
+            Set<String> paths = trigrams.get(trigram(entry.lowerCaseName, i));
+            if (paths != null) {
+                paths.remove(path);
+            }
+        }
+        Set<String> paths = extensions.get(entry.extension);
+        if (paths != null) {
+            paths.remove(path);
+        }
+    }
+
+    private void removeTree(Path path) {
+        String prefix = path.toString();
+        remove(prefix);
+        String childPrefix = prefix + File.separator;
+        for (String child : new ArrayList<>(entries.subMap(childPrefix, childPrefix + Character.MAX_VALUE).keySet())) {
+            remove(child);
+        }
+    }
+
+    // Indexes and watches every directory under start, and drops entries for files that are gone
+    private void walk(Path start) throws IOException {
+        Set<String> seen = new HashSet<>();
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                watchedDirectories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (SearchEntries.isReported(file, attributes)) {
+                    seen.add(file.toString());
+                    index(file, attributes);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        String prefix = start + File.separator;
+        for (String path : new ArrayList<>(entries.subMap(prefix, prefix + Character.MAX_VALUE).keySet())) {
+            if (!seen.contains(path)) {
+                remove(path);
+            }
+        }
+    }
+
+    // Links are indexed with their target's size and time, or zeros when the target cannot be read, as FileContext does
+    private void index(Path file, BasicFileAttributes attributes) {
+        String path = file.toString();
+        long size = attributes.size();
+        long lastModifiedMillis = attributes.lastModifiedTime().toMillis();
+        if (attributes.isSymbolicLink()) {
+            try {
+                BasicFileAttributes target = Files.readAttributes(file, BasicFileAttributes.class);
+                size = target.size();
+                lastModifiedMillis = target.lastModifiedTime().toMillis();
+            } catch (IOException | SecurityException e) {
+                size = 0;
+                lastModifiedMillis = 0;
+            }
+        }
+        Entry existing = entries.get(path);
+        if (existing == null || existing.size != size || existing.lastModifiedMillis != lastModifiedMillis) {
+            put(new Entry(path, size, lastModifiedMillis));
+        }
+    }
+
+    private void watch(boolean reconcile) {
+        try {
+            if (reconcile) {
+                walk(root);
+            }
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = watchedDirectories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                        walk(root);
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        removeTree(child);
+                        continue;
+                    }
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class,
+                                LinkOption.NOFOLLOW_LINKS);
+                        if (attributes.isDirectory()) {
+                            walk(child);
+                        } else if (SearchEntries.isReported(child, attributes)) {
+                            index(child, attributes);
+                        } else {
+                            removeTree(child);
+                        }
+                    } catch (IOException e) {
+                        removeTree(child);
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        } catch (IOException e) {
+            System.out.println("File index watcher stopped: " + e.getMessage());
+        }
+    }
+
+    public void save() throws IOException {
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FORMAT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(root.toString());
+            List<Entry> snapshot = new ArrayList<>(entries.values());
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot) {
+                out.writeUTF(entry.path);
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModifiedMillis);
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns false if there is no usable index for this root
+    private boolean load() {
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != FORMAT_MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(root.toString())) {
+                return false;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                put(new Entry(in.readUTF(), in.readLong(), in.readLong()));
+            }
+            return true;
+        } catch (IOException e) {
+            entries.clear();
+            trigrams.clear();
+            extensions.clear();
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        try {
+            watchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        save();
+    }
+}
+
+// Lazy depth-first traversal: one directory stream open at a time, advanced only as matches are pulled
+class LazyFileSearchIterator implements Iterator<File>, AutoCloseable {
+    private final FileCriteria criteria;
+    private final BooleanSupplier cancelled;
+    private final Deque<Path> pendingDirectories = new ArrayDeque<>();
+    private DirectoryStream<Path> currentDirectory;
+    private Iterator<Path> currentEntries;
+    private File next;
+
+    LazyFileSearchIterator(Path root, FileCriteria criteria) {
+        this(root, criteria, () -> false);
+    }
+
+    // cancelled is checked before every entry and directory, so a cancelled walk stops even between matches
+    LazyFileSearchIterator(Path root, FileCriteria criteria, BooleanSupplier cancelled) {
+        this.criteria = criteria;
+        this.cancelled = cancelled;
+        pendingDirectories.push(root);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (cancelled.getAsBoolean()) {
+                close();
+                return false;
+            }
+            if (currentEntries != null && currentEntries.hasNext()) {
+                visit(currentEntries.next());
+            } else if (!openNextDirectory()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public File next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        File file = next;
+        next = null;
+        return file;
+    }
+
+    private void visit(Path entry) {
+        BasicFileAttributes attributes = SearchEntries.readAttributes(entry);
+        if (attributes == null) {
+            return;
+        }
+        if (attributes.isDirectory()) {
+            pendingDirectories.push(entry);
+            return;
+        }
+        if (SearchEntries.isReported(entry, attributes)) {
+            File file = entry.toFile();
+            if (criteria.meetsCriteria(SearchEntries.context(file, attributes))) {
+                next = file;
+            }
+        }
+    }
+
+    private boolean openNextDirectory() {
+        closeCurrentDirectory();
+        while (!pendingDirectories.isEmpty()) {
+            try {
+                currentDirectory = Files.newDirectoryStream(pendingDirectories.pop());
+                currentEntries = currentDirectory.iterator();
+                return true;
+            } catch (IOException | SecurityException e) {
+                // Unreadable directories are skipped
+            }
+        }
+        return false;
+    }
+
+    private void closeCurrentDirectory() {
+        if (currentDirectory != null) {
+            try {
+                currentDirectory.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+            currentDirectory = null;
+            currentEntries = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeCurrentDirectory();
+        pendingDirectories.clear();
+    }
+}
+
+// Parallel traversal task: one directory per task, subdirectories forked for work stealing; matches go to one shared sink
+class DirectorySearchTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    // Below this depth subtrees are walked iteratively on the current thread, keeping join chains short
+    static final int MAX_FORK_DEPTH = 64;
+
+    private final Path directory;
+    private final FileCriteria criteria;
+    private final Queue<File> matchingFiles;
+    private final int depth;
+
+    DirectorySearchTask(Path directory, FileCriteria criteria, Queue<File> matchingFiles, int depth) {
+        this.directory = directory;
+        this.criteria = criteria;
+        this.matchingFiles = matchingFiles;
+        this.depth = depth;
+    }
+
+    @Override
+    protected void compute() {
+        if (depth >= MAX_FORK_DEPTH) {
+            searchIteratively(directory);
+            return;
+        }
+        List<DirectorySearchTask> subtasks = new ArrayList<>();
+        scanDirectory(directory, subdirectory -> {
+            DirectorySearchTask subtask = new DirectorySearchTask(subdirectory, criteria, matchingFiles, depth + 1);
+            subtask.fork();
+            subtasks.add(subtask);
+        });
+        for (DirectorySearchTask subtask : subtasks) {
+            subtask.join();
+        }
+    }
+
+    private void searchIteratively(Path root) {
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            scanDirectory(pending.pop(), pending::push);
+        }
+    }
+
+    private void scanDirectory(Path dir, Consumer<Path> onSubdirectory) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes = SearchEntries.readAttributes(entry);
+                if (attributes == null) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    onSubdirectory.accept(entry);
+                } else if (SearchEntries.isReported(entry, attributes)) {
+                    File file = entry.toFile();
+                    if (criteria.meetsCriteria(SearchEntries.context(file, attributes))) {
+                        matchingFiles.add(file);
+                    }
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            // Unreadable directories are skipped, as in the sequential search
+        }
     }
 }
 
 // File search engine
-class FileSearchEngine {
+class FileSearchEngine implements AutoCloseable {
     private File baseDirectory;
+    private int parallelism;
+    private FileIndex index;
+    private ExecutorService asyncExecutor;
+    private boolean closed;
 
     public FileSearchEngine(String baseDirectoryPath) {
+        this(baseDirectoryPath, Runtime.getRuntime().availableProcessors());
+    }
+
+    // For I/O-bound trees (e.g. network mounts) a parallelism above the core count keeps more requests in flight
+    public FileSearchEngine(String baseDirectoryPath, int parallelism) {
         this.baseDirectory = new File(baseDirectoryPath);
+        this.parallelism = parallelism;
+    }
+
+    public List<File> searchParallel(FileCriteria criteria) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Queue<File> matchingFiles = new ConcurrentLinkedQueue<>();
+            pool.invoke(new DirectorySearchTask(baseDirectory.toPath(), criteria, matchingFiles, 0));
+            return new ArrayList<>(matchingFiles);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Builds or loads an on-disk index of the base directory; later searches are answered from it.
+    // The index holds the same files as a walk (see SearchEntries), but reports them by absolute path, and it
+    // only sees changes the WatchService reports: a link whose target changes keeps the target's old size and time.
+    public void enableIndex(Path indexFile) throws IOException {
+        if (index == null) {
+            index = FileIndex.open(baseDirectory.toPath(), indexFile);
+        }
+    }
+
+    // Stops the default searchAsync executor, then saves and stops the index, if one is enabled
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            if (asyncExecutor != null) {
+                asyncExecutor.shutdown();
+                asyncExecutor = null;
+            }
+        }
+        if (index != null) {
+            index.close();
+            index = null;
+        }
+    }
+
+    // Lazy results: short-circuiting operations such as limit() or findFirst() stop the traversal early.
+    // Close the stream (e.g. try-with-resources) if it is not fully consumed.
+    public Stream<File> searchStream(FileCriteria criteria) {
+        return searchStream(criteria, () -> false);
+    }
+
+    private Stream<File> searchStream(FileCriteria criteria, BooleanSupplier cancelled) {
+        if (index != null) {
+            return index.searchStream(criteria, cancelled);
+        }
+        LazyFileSearchIterator iterator = new LazyFileSearchIterator(baseDirectory.toPath(), criteria, cancelled);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    // Runs on an engine-owned pool of daemon threads, stopped by close(); throws IllegalStateException after close()
+    public CompletableFuture<Void> searchAsync(FileCriteria criteria, Consumer<File> onMatch) {
+        return searchAsync(criteria, onMatch, asyncExecutor());
+    }
+
+    // Pushes each match to the callback as it is found; cancelling the returned future stops the traversal
+    public CompletableFuture<Void> searchAsync(FileCriteria criteria, Consumer<File> onMatch, Executor executor) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try (Stream<File> matches = searchStream(criteria, result::isDone)) {
+                    matches.forEachOrdered(onMatch);
+                    result.complete(null);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private synchronized Executor asyncExecutor() {
+        if (closed) {
+            throw new IllegalStateException("Search engine is closed");
+        }
+        if (asyncExecutor == null) {
+            asyncExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread worker = new Thread(runnable, "file-search");
+                worker.setDaemon(true);
+                return worker;
+            });
+        }
+        return asyncExecutor;
     }
 
     public List<File> search(FileCriteria criteria) {
+        if (index != null) {
+            return index.search(criteria);
+        }
         List<File> matchingFiles = new ArrayList<>();
         searchRecursively(baseDirectory, criteria, matchingFiles);
         return matchingFiles;
@@ -112,9 +985,15 @@ class FileSearchEngine {
 
         if (files != null) {
             for (File file : files) {
-                if (file.isDirectory()) {
+                // One stat per entry, shared by the directory check and the criteria
+                BasicFileAttributes attributes = SearchEntries.readAttributes(file.toPath());
+                if (attributes == null) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
                     searchRecursively(file, criteria, matchingFiles);
-                } else if (criteria.meetsCriteria(file)) {
+                } else if (SearchEntries.isReported(file.toPath(), attributes)
+                        && criteria.meetsCriteria(SearchEntries.context(file, attributes))) {
                     matchingFiles.add(file);
                 }
             }
@@ -123,18 +1002,24 @@ class FileSearchEngine {
 }
 
 
-
 public class FileSearchApp {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // A small sample tree to search
+        Path sampleDirectory = Files.createTempDirectory("search-demo");
+        Files.createDirectories(sampleDirectory.resolve("archive"));
+        Files.write(sampleDirectory.resolve("q1-report.txt"), new byte[2048]);
+        Files.write(sampleDirectory.resolve("notes.txt"), new byte[10]);
+        Files.write(sampleDirectory.resolve("archive").resolve("q4-report.txt"), new byte[4096]);
+
         // Create a search engine for a specific directory
-        FileSearchEngine searchEngine = new FileSearchEngine("/path/to/directory");
+        FileSearchEngine searchEngine = new FileSearchEngine(sampleDirectory.toString());
 
         // Create individual criteria
         FileCriteria nameCriteria = new NameCriteria("report");
         FileCriteria sizeCriteria = new SizeCriteria(1024L, 1024 * 1024L);
 
-        // Combine criteria
-        FileCriteria combinedCriteria = new AndCriteria(nameCriteria, sizeCriteria);
+        // Combine criteria; the name check runs before the size check regardless of argument order
+        FileCriteria combinedCriteria = new AndCriteria(sizeCriteria, nameCriteria);
 
         // Perform search
         List<File> results = searchEngine.search(combinedCriteria);
@@ -143,5 +1028,53 @@ public class FileSearchApp {
         for (File file : results) {
             System.out.println("Matching file: " + file.getAbsolutePath());
         }
+
+        // Combine with Or/Not; each file's attributes are still read at most once
+        FileCriteria recentOrLarge = new OrCriteria(new NotCriteria(new ModifiedTimeCriteria(24 * 60 * 60 * 1000L)),
+                new SizeCriteria(10 * 1024 * 1024L, null));
+        List<File> recentOrLargeReports = searchEngine.search(new AndCriteria(recentOrLarge, nameCriteria));
+        System.out.println("Recent or large reports: " + recentOrLargeReports.size());
+
+        // Perform the same search across several threads
+        List<File> parallelResults = new FileSearchEngine(sampleDirectory.toString(), 16).searchParallel(combinedCriteria);
+        for (File file : parallelResults) {
+            System.out.println("Matching file (parallel): " + file.getAbsolutePath());
+        }
+
+        // Streaming search: stops walking the tree once the first 10 matches are found
+        try (Stream<File> firstMatches = searchEngine.searchStream(nameCriteria).limit(10)) {
+            firstMatches.forEach(file -> System.out.println("Early match: " + file.getAbsolutePath()));
+        }
+
+        // Asynchronous search: matches are pushed to the callback; cancel(true) on the future would stop the walk
+        try (FileSearchEngine asyncEngine = new FileSearchEngine(sampleDirectory.toString())) {
+            asyncEngine.searchAsync(nameCriteria, file -> System.out.println("Async match: " + file.getAbsolutePath()))
+                    .join();
+        }
+
+        // Indexed search: built once, then kept current from filesystem events
+        Path reportsDirectory = Files.createTempDirectory("reports");
+        Path indexFile = Files.createTempFile("reports", ".idx");
+        Files.delete(indexFile);
+        Files.write(reportsDirectory.resolve("q1-report.txt"), new byte[2048]);
+        Files.write(reportsDirectory.resolve("notes.txt"), new byte[10]);
+        try (FileSearchEngine indexedEngine = new FileSearchEngine(reportsDirectory.toString())) {
+            indexedEngine.enableIndex(indexFile);
+            System.out.println("Indexed reports: " + indexedEngine.search(new NameCriteria("report")).size());
+            Files.write(reportsDirectory.resolve("q2-report.txt"), new byte[10]);
+            Thread.sleep(500);
+            System.out.println("Indexed reports after a new file: " + indexedEngine.search(new NameCriteria("report")).size());
+        }
+        deleteTree(reportsDirectory);
+        deleteTree(sampleDirectory);
+        Files.delete(indexFile);
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
     }
 }
@@ -1,5 +1,17 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * Composite Pattern: Design a "File System" with folders and files where operations can be performed on individual files or entire folders.
@@ -8,14 +20,61 @@ import java.util.List;
 // Component Interface
 interface FileSystemComponent {
     void showDetails();
+
+    // Total size of this component and everything under it
+    long getSize();
+
+    // Number of files and folders under this component, not counting itself
+    long getDescendantCount();
+
+    AbstractFolder getParent();
+
+    void setParent(AbstractFolder parent);
 }
 
 // Leaf Class
 class File implements FileSystemComponent {
     private String name;
+    private long size;
+    private volatile AbstractFolder parent;
 
     public File(String name) {
+        this(name, 0);
+    }
+
+    public File(String name, long size) {
         this.name = name;
+        this.size = size;
+    }
+
+    // The change is pushed up to every enclosing folder's cached total. Synchronized like
+    // ConcurrentFolder's add and remove, so the delta reaches the folder the file is in.
+    public synchronized void setSize(long size) {
+        long delta = size - this.size;
+        this.size = size;
+        if (parent != null) {
+            parent.applyDelta(delta, 0);
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public long getDescendantCount() {
+        return 0;
+    }
+
+    @Override
+    public AbstractFolder getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(AbstractFolder parent) {
+        this.parent = parent;
     }
 
     @Override
@@ -24,38 +83,786 @@ class File implements FileSystemComponent {
     }
 }
 
-// Composite Class
-class Folder implements FileSystemComponent {
+// Composite base - parent links and rollup propagation; subclasses decide how children and totals are stored
+abstract class AbstractFolder implements FileSystemComponent {
     private String name;
-    private List<FileSystemComponent> components = new ArrayList<>();
+    // Volatile so a rollup walking up from another thread sees the current ancestors
+    private volatile AbstractFolder parent;
 
-    public Folder(String name) {
+    AbstractFolder(String name) {
         this.name = name;
     }
 
     public void addComponent(FileSystemComponent component) {
-        components.add(component);
+        if (component.getParent() != null) {
+            throw new IllegalStateException("Component already belongs to a folder");
+        }
+        for (AbstractFolder ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor == component) {
+                throw new IllegalArgumentException("A folder cannot contain itself");
+            }
+        }
+        component.setParent(this);
+        attach(component);
+        applyDelta(component.getSize(), component.getDescendantCount() + 1);
     }
 
     public void removeComponent(FileSystemComponent component) {
-        components.remove(component);
+        if (detach(component)) {
+            component.setParent(null);
+            applyDelta(-component.getSize(), -(component.getDescendantCount() + 1));
+        }
+    }
+
+    // Child storage hooks
+    abstract void attach(FileSystemComponent component);
+
+    abstract boolean detach(FileSystemComponent component);
+
+    abstract void forEachChild(Consumer<FileSystemComponent> action);
+
+    abstract List<FileSystemComponent> getComponents();
+
+    // Cached rollups, updated up the parent chain on every change so queries are O(1)
+    void applyDelta(long sizeDelta, long countDelta) {
+        for (AbstractFolder folder = this; folder != null; folder = folder.parent) {
+            folder.addToTotals(sizeDelta, countDelta);
+        }
+    }
+
+    abstract void addToTotals(long sizeDelta, long countDelta);
+
+    @Override
+    public AbstractFolder getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(AbstractFolder parent) {
+        this.parent = parent;
     }
 
     @Override
     public void showDetails() {
         System.out.println("Folder: " + name);
+        forEachChild(FileSystemComponent::showDetails);
+    }
+}
+
+// Composite Class
+class Folder extends AbstractFolder {
+    private List<FileSystemComponent> components = new ArrayList<>();
+    private long totalSize;
+    private long descendantCount;
+
+    public Folder(String name) {
+        super(name);
+    }
+
+    @Override
+    void attach(FileSystemComponent component) {
+        components.add(component);
+    }
+
+    @Override
+    boolean detach(FileSystemComponent component) {
+        return components.remove(component);
+    }
+
+    @Override
+    void forEachChild(Consumer<FileSystemComponent> action) {
         for (FileSystemComponent component : components) {
-            component.showDetails();
+            action.accept(component);
+        }
+    }
+
+    @Override
+    List<FileSystemComponent> getComponents() {
+        return components;
+    }
+
+    @Override
+    void addToTotals(long sizeDelta, long countDelta) {
+        totalSize += sizeDelta;
+        descendantCount += countDelta;
+    }
+
+    @Override
+    public long getSize() {
+        return totalSize;
+    }
+
+    @Override
+    public long getDescendantCount() {
+        return descendantCount;
+    }
+}
+
+// Concurrent Composite - readers traverse lock-free snapshots while writers copy-on-write.
+// Small folders keep one child array; past STRIPE_THRESHOLD children are spread over
+// STRIPES arrays with their own locks, so a write copies only its stripe and writers on
+// different stripes do not contend. Each stripe is an atomic snapshot, but a traversal may
+// see a write to one stripe and not a concurrent write to another. Rollups stay exact as long
+// as every ancestor is also a ConcurrentFolder.
+class ConcurrentFolder extends AbstractFolder {
+    static final int STRIPE_THRESHOLD = 64;
+    static final int STRIPES = 16;
+    private static final FileSystemComponent[] EMPTY = new FileSystemComponent[0];
+
+    private static final class Stripe {
+        volatile FileSystemComponent[] children = EMPTY;
+    }
+
+    private volatile Stripe[] stripes = { new Stripe() };
+    private final AtomicLong totalSize = new AtomicLong();
+    private final AtomicLong descendantCount = new AtomicLong();
+    private final AtomicInteger childCount = new AtomicInteger();
+    // Guards this folder's parent link. A rollup holds a folder's read lock while it reads the parent and
+    // takes the parent's read lock hand-over-hand, so moving this folder (write lock) waits only for rollups
+    // passing through it, and rollups in unrelated subtrees never wait on each other.
+    private final ReentrantReadWriteLock link = new ReentrantReadWriteLock();
+    // Serializes moves of folders with each other only, so two concurrent moves cannot build a cycle
+    private static final ReentrantLock MOVES = new ReentrantLock();
+
+    public ConcurrentFolder(String name) {
+        super(name);
+    }
+
+    // Locking the component makes the already-has-a-parent check atomic with setting it
+    @Override
+    public void addComponent(FileSystemComponent component) {
+        synchronized (component) {
+            if (component instanceof File) {
+                super.addComponent(component);
+                return;
+            }
+            moveLocked(component, () -> super.addComponent(component));
+        }
+    }
+
+    @Override
+    public void removeComponent(FileSystemComponent component) {
+        synchronized (component) {
+            if (component instanceof File) {
+                super.removeComponent(component);
+                return;
+            }
+            moveLocked(component, () -> super.removeComponent(component));
+        }
+    }
+
+    // A moved folder's totals and parent link change together, so every rollup passing through it
+    // lands either before the move (and is carried along) or after it (and follows the new parent)
+    private static void moveLocked(FileSystemComponent component, Runnable move) {
+        MOVES.lock();
+        try {
+            Lock lock = component instanceof ConcurrentFolder ? ((ConcurrentFolder) component).link.writeLock() : null;
+            if (lock != null) {
+                lock.lock();
+            }
+            try {
+                move.run();
+            } finally {
+                if (lock != null) {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            MOVES.unlock();
+        }
+    }
+
+    @Override
+    void applyDelta(long sizeDelta, long countDelta) {
+        Lock held = link.readLock();
+        held.lock();
+        try {
+            for (AbstractFolder folder = this; folder != null; ) {
+                folder.addToTotals(sizeDelta, countDelta);
+                AbstractFolder parent = folder.getParent();
+                if (parent instanceof ConcurrentFolder) {
+                    Lock next = ((ConcurrentFolder) parent).link.readLock();
+                    next.lock();
+                    held.unlock();
+                    held = next;
+                }
+                folder = parent;
+            }
+        } finally {
+            held.unlock();
+        }
+    }
+
+    @Override
+    void attach(FileSystemComponent component) {
+        while (true) {
+            Stripe[] current = stripes;
+            Stripe stripe = current[stripeIndex(component, current.length)];
+            synchronized (stripe) {
+                if (stripes != current) {
+                    continue;
+                }
+                FileSystemComponent[] children = stripe.children;
+                FileSystemComponent[] updated = Arrays.copyOf(children, children.length + 1);
+                updated[children.length] = component;
+                stripe.children = updated;
+                if (childCount.incrementAndGet() > STRIPE_THRESHOLD && current.length == 1) {
+                    promote(stripe);
+                }
+                return;
+            }
+        }
+    }
+
+    // Called holding the single stripe's lock, so no writer can slip in while children move
+    private void promote(Stripe single) {
+        Stripe[] striped = new Stripe[STRIPES];
+        List<List<FileSystemComponent>> buckets = new ArrayList<>();
+        for (int i = 0; i < STRIPES; i++) {
+            striped[i] = new Stripe();
+            buckets.add(new ArrayList<>());
+        }
+        for (FileSystemComponent child : single.children) {
+            buckets.get(stripeIndex(child, STRIPES)).add(child);
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            striped[i].children = buckets.get(i).toArray(EMPTY);
+        }
+        stripes = striped;
+    }
+
+    @Override
+    boolean detach(FileSystemComponent component) {
+        while (true) {
+            Stripe[] current = stripes;
+            Stripe stripe = current[stripeIndex(component, current.length)];
+            synchronized (stripe) {
+                if (stripes != current) {
+                    continue;
+                }
+                FileSystemComponent[] children = stripe.children;
+                for (int i = 0; i < children.length; i++) {
+                    if (children[i].equals(component)) {
+                        FileSystemComponent[] updated = new FileSystemComponent[children.length - 1];
+                        System.arraycopy(children, 0, updated, 0, i);
+                        System.arraycopy(children, i + 1, updated, i, children.length - i - 1);
+                        stripe.children = updated;
+                        childCount.decrementAndGet();
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+    }
+
+    private static int stripeIndex(FileSystemComponent component, int stripeCount) {
+        int h = component.hashCode();
+        return ((h ^ (h >>> 16)) & 0x7fffffff) % stripeCount;
+    }
+
+    @Override
+    void forEachChild(Consumer<FileSystemComponent> action) {
+        for (Stripe stripe : stripes) {
+            for (FileSystemComponent child : stripe.children) {
+                action.accept(child);
+            }
+        }
+    }
+
+    @Override
+    List<FileSystemComponent> getComponents() {
+        List<FileSystemComponent> snapshot = new ArrayList<>(childCount.get());
+        forEachChild(snapshot::add);
+        return snapshot;
+    }
+
+    @Override
+    void addToTotals(long sizeDelta, long countDelta) {
+        totalSize.addAndGet(sizeDelta);
+        descendantCount.addAndGet(countDelta);
+    }
+
+    @Override
+    public long getSize() {
+        return totalSize.get();
+    }
+
+    @Override
+    public long getDescendantCount() {
+        return descendantCount.get();
+    }
+}
+
+// Interned name table - each distinct name is stored once and referenced by id
+class NameTable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[1024];
+    private int count;
+
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+        }
+        names[count] = name;
+        ids.put(name, count);
+        return count++;
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return count;
+    }
+}
+
+// Compact Tree Store - struct-of-arrays tree with int links instead of one object per node
+class CompactFileTree {
+    private static final int NONE = -1;
+    private static final byte FOLDER = 1;
+
+    private final NameTable names = new NameTable();
+    private int[] parent;
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] nextSibling;
+    private int[] nameId;
+    private byte[] flags;
+    // Own size for files, rolled-up subtree size for folders
+    private long[] size;
+    private int[] descendantCount;
+    private int count;
+    // Folder the root is mounted under, so changes still roll up into the object tree
+    private AbstractFolder mountParent;
+
+    public CompactFileTree(String rootName, int expectedNodes) {
+        int capacity = Math.max(16, expectedNodes);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        nameId = new int[capacity];
+        flags = new byte[capacity];
+        size = new long[capacity];
+        descendantCount = new int[capacity];
+        newNode(NONE, rootName, FOLDER, 0);
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    public int addFolder(int parentNode, String name) {
+        return link(parentNode, newNode(parentNode, name, FOLDER, 0));
+    }
+
+    public int addFile(int parentNode, String name, long fileSize) {
+        return link(parentNode, newNode(parentNode, name, (byte) 0, fileSize));
+    }
+
+    private int newNode(int parentNode, String name, byte kind, long nodeSize) {
+        if (count == parent.length) {
+            grow();
+        }
+        int node = count++;
+        parent[node] = parentNode;
+        firstChild[node] = NONE;
+        lastChild[node] = NONE;
+        nextSibling[node] = NONE;
+        nameId[node] = names.intern(name);
+        flags[node] = kind;
+        size[node] = nodeSize;
+        descendantCount[node] = 0;
+        return node;
+    }
+
+    private int link(int parentNode, int node) {
+        if (!isFolder(parentNode)) {
+            throw new IllegalArgumentException("Node " + parentNode + " is not a folder");
+        }
+        if (lastChild[parentNode] == NONE) {
+            firstChild[parentNode] = node;
+        } else {
+            nextSibling[lastChild[parentNode]] = node;
+        }
+        lastChild[parentNode] = node;
+        for (int folder = parentNode; folder != NONE; folder = parent[folder]) {
+            size[folder] += size[node];
+            descendantCount[folder]++;
+        }
+        if (mountParent != null) {
+            mountParent.applyDelta(size[node], 1);
+        }
+        return node;
+    }
+
+    private void grow() {
+        int capacity = parent.length * 2;
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        nameId = Arrays.copyOf(nameId, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        size = Arrays.copyOf(size, capacity);
+        descendantCount = Arrays.copyOf(descendantCount, capacity);
+    }
+
+    public boolean isFolder(int node) {
+        return flags[node] == FOLDER;
+    }
+
+    public String getName(int node) {
+        return names.nameOf(nameId[node]);
+    }
+
+    public long getSize(int node) {
+        return size[node];
+    }
+
+    public int getDescendantCount(int node) {
+        return descendantCount[node];
+    }
+
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    public int nodeCount() {
+        return count;
+    }
+
+    public int distinctNames() {
+        return names.size();
+    }
+
+    // Pre-order walk following the links themselves, so no stack is needed at any depth
+    public void forEachDepthFirst(int start, IntConsumer visitor) {
+        int node = start;
+        while (true) {
+            visitor.accept(node);
+            if (firstChild[node] != NONE) {
+                node = firstChild[node];
+                continue;
+            }
+            while (node != start && nextSibling[node] == NONE) {
+                node = parent[node];
+            }
+            if (node == start) {
+                return;
+            }
+            node = nextSibling[node];
+        }
+    }
+
+    public void forEachBreadthFirst(int start, IntConsumer visitor) {
+        int[] queue = new int[descendantCount[start] + 1];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int node = queue[head++];
+            visitor.accept(node);
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    public FileSystemComponent view(int node) {
+        return new CompactNode(this, node);
+    }
+
+    void mount(AbstractFolder folder) {
+        mountParent = folder;
+    }
+
+    AbstractFolder mountParent() {
+        return mountParent;
+    }
+}
+
+// Flyweight view that presents a compact tree node as a FileSystemComponent
+class CompactNode implements FileSystemComponent {
+    private final CompactFileTree tree;
+    private final int node;
+
+    public CompactNode(CompactFileTree tree, int node) {
+        this.tree = tree;
+        this.node = node;
+    }
+
+    @Override
+    public void showDetails() {
+        tree.forEachDepthFirst(node, n ->
+                System.out.println((tree.isFolder(n) ? "Folder: " : "File: ") + tree.getName(n)));
+    }
+
+    @Override
+    public long getSize() {
+        return tree.getSize(node);
+    }
+
+    @Override
+    public long getDescendantCount() {
+        return tree.getDescendantCount(node);
+    }
+
+    // Inner nodes are parented inside the store; only the root can be mounted in a Folder
+    @Override
+    public AbstractFolder getParent() {
+        return node == tree.root() ? tree.mountParent() : null;
+    }
+
+    @Override
+    public void setParent(AbstractFolder parent) {
+        if (node != tree.root()) {
+            throw new UnsupportedOperationException("Only the root of a compact tree can be mounted");
+        }
+        tree.mount(parent);
+    }
+
+    // Views are created on demand, so two views of the same node must compare equal (e.g. for removeComponent)
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CompactNode)) {
+            return false;
+        }
+        CompactNode that = (CompactNode) other;
+        return tree == that.tree && node == that.node;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(tree) + node;
+    }
+}
+
+// Benchmark - heap footprint and traversal time of the object tree vs. the compact store
+class CompactTreeBenchmark {
+    public static void run(int folderCount, int filesPerFolder) {
+        long baseline = usedHeap();
+        Folder objectRoot = new Folder("root");
+        for (int f = 0; f < folderCount; f++) {
+            Folder folder = new Folder("folder-" + f);
+            for (int i = 0; i < filesPerFolder; i++) {
+                folder.addComponent(new File("file-" + i + ".dat", i));
+            }
+            objectRoot.addComponent(folder);
+        }
+        long objectBytes = usedHeap() - baseline;
+        long start = System.nanoTime();
+        long[] objectVisited = new long[1];
+        countObjects(objectRoot, objectVisited);
+        long objectNanos = System.nanoTime() - start;
+        objectRoot = null;
+
+        baseline = usedHeap();
+        CompactFileTree tree = new CompactFileTree("root", folderCount * (filesPerFolder + 1) + 1);
+        for (int f = 0; f < folderCount; f++) {
+            int folder = tree.addFolder(tree.root(), "folder-" + f);
+            for (int i = 0; i < filesPerFolder; i++) {
+                tree.addFile(folder, "file-" + i + ".dat", i);
+            }
+        }
+        long compactBytes = usedHeap() - baseline;
+        long[] compactVisited = new long[1];
+        start = System.nanoTime();
+        tree.forEachDepthFirst(tree.root(), n -> compactVisited[0]++);
+        long depthFirstNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        tree.forEachBreadthFirst(tree.root(), n -> compactVisited[0]++);
+        long breadthFirstNanos = System.nanoTime() - start;
+
+        System.out.println(tree.nodeCount() + " nodes (" + tree.distinctNames() + " distinct names): object tree "
+                + objectBytes / 1_048_576 + " MB, walk " + objectNanos / 1_000_000 + " ms; compact "
+                + compactBytes / 1_048_576 + " MB, DFS " + depthFirstNanos / 1_000_000 + " ms, BFS "
+                + breadthFirstNanos / 1_000_000 + " ms"
+                + (objectVisited[0] * 2 == compactVisited[0] ? "" : " (mismatch)"));
+
+        CompactFileTree deep = new CompactFileTree("deep", 50_001);
+        int node = deep.root();
+        for (int level = 0; level < 50_000; level++) {
+            node = deep.addFolder(node, "level");
+        }
+        long[] deepVisited = new long[1];
+        deep.forEachDepthFirst(deep.root(), n -> deepVisited[0]++);
+        System.out.println("Depth-first walk of a " + deepVisited[0] + "-level chain completed without recursion");
+    }
+
+    private static void countObjects(FileSystemComponent component, long[] visited) {
+        visited[0]++;
+        if (component instanceof Folder) {
+            for (FileSystemComponent child : ((Folder) component).getComponents()) {
+                countObjects(child, visited);
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
         }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// Benchmark - cost of incremental rollup maintenance vs. O(1) queries vs. a full subtree walk
+class RollupBenchmark {
+    public static void run(int folderCount, int filesPerFolder, int depth) {
+        Folder root = new Folder("root");
+        List<Folder> leaves = new ArrayList<>();
+        for (int f = 0; f < folderCount; f++) {
+            Folder folder = root;
+            for (int level = 0; level < depth; level++) {
+                Folder child = new Folder("folder-" + f + "-" + level);
+                folder.addComponent(child);
+                folder = child;
+            }
+            for (int i = 0; i < filesPerFolder; i++) {
+                folder.addComponent(new File("file-" + i, i));
+            }
+            leaves.add(folder);
+        }
+
+        int mutations = 100_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < mutations; i++) {
+            Folder folder = leaves.get(i % leaves.size());
+            File file = new File("temp", 10);
+            folder.addComponent(file);
+            folder.removeComponent(file);
+        }
+        long mutationNanos = (System.nanoTime() - start) / (2L * mutations);
+
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < mutations; i++) {
+            checksum += root.getSize() + root.getDescendantCount();
+        }
+        long queryNanos = (System.nanoTime() - start) / mutations;
+
+        start = System.nanoTime();
+        long walkedSize = walkSize(root);
+        long walkNanos = System.nanoTime() - start;
+
+        System.out.println(root.getDescendantCount() + " nodes, depth " + depth + ": mutation " + mutationNanos
+                + " ns, cached query " + queryNanos + " ns, full walk " + walkNanos / 1_000 + " us"
+                + (walkedSize == root.getSize() && checksum != 0 ? "" : " (mismatch)"));
+    }
+
+    private static long walkSize(FileSystemComponent component) {
+        if (component instanceof Folder) {
+            long size = 0;
+            for (FileSystemComponent child : ((Folder) component).getComponents()) {
+                size += walkSize(child);
+            }
+            return size;
+        }
+        return component.getSize();
+    }
+}
+
+// Benchmark - traversal throughput of a ConcurrentFolder tree under a 10% concurrent write mix
+class ConcurrentTreeBenchmark {
+    public static void run(int maxThreads, long millisPerRun) throws InterruptedException {
+        ConcurrentFolder root = new ConcurrentFolder("root");
+        List<ConcurrentFolder> folders = new ArrayList<>();
+        for (int f = 0; f < 100; f++) {
+            ConcurrentFolder folder = new ConcurrentFolder("folder-" + f);
+            // Alternate small copy-on-write folders and large striped ones
+            int files = f % 2 == 0 ? 20 : 400;
+            for (int i = 0; i < files; i++) {
+                folder.addComponent(new File("file-" + i, i));
+            }
+            root.addComponent(folder);
+            folders.add(folder);
+        }
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            LongAdder traversals = new LongAdder();
+            LongAdder nodesVisited = new LongAdder();
+            LongAdder writes = new LongAdder();
+            long deadline = System.nanoTime() + millisPerRun * 1_000_000;
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    List<File> added = new ArrayList<>();
+                    List<ConcurrentFolder> addedTo = new ArrayList<>();
+                    while (System.nanoTime() < deadline) {
+                        if (random.nextInt(10) == 0) {
+                            if (!added.isEmpty() && random.nextBoolean()) {
+                                int last = added.size() - 1;
+                                addedTo.remove(last).removeComponent(added.remove(last));
+                            } else {
+                                ConcurrentFolder folder = folders.get(random.nextInt(folders.size()));
+                                File file = new File("temp", 100);
+                                folder.addComponent(file);
+                                added.add(file);
+                                addedTo.add(folder);
+                            }
+                            writes.increment();
+                        } else {
+                            nodesVisited.add(countNodes(folders.get(random.nextInt(folders.size()))));
+                            traversals.increment();
+                        }
+                    }
+                    for (int i = 0; i < added.size(); i++) {
+                        addedTo.get(i).removeComponent(added.get(i));
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            double seconds = millisPerRun / 1_000.0;
+            System.out.printf("%d threads: %,.0f traversals/s (%,.0f nodes/s), %,.0f writes/s%n", threads,
+                    traversals.sum() / seconds, nodesVisited.sum() / seconds, writes.sum() / seconds);
+        }
+
+        long walked = walkSize(root);
+        System.out.println("Rollups after concurrent writes: size " + root.getSize()
+                + (walked == root.getSize() && countNodes(root) == root.getDescendantCount() + 1 ? " (consistent)" : " (mismatch)"));
+    }
+
+    private static long countNodes(FileSystemComponent component) {
+        if (!(component instanceof AbstractFolder)) {
+            return 1;
+        }
+        long[] count = { 1 };
+        ((AbstractFolder) component).forEachChild(child -> count[0] += countNodes(child));
+        return count[0];
+    }
+
+    private static long walkSize(FileSystemComponent component) {
+        if (!(component instanceof AbstractFolder)) {
+            return component.getSize();
+        }
+        long[] size = { 0 };
+        ((AbstractFolder) component).forEachChild(child -> size[0] += walkSize(child));
+        return size[0];
     }
 }
 
 // Client Code
 public class FileSystemApp {
-    public static void main(String[] args) {
-        FileSystemComponent file1 = new File("Document1.txt");
-        FileSystemComponent file2 = new File("Photo1.jpg");
-        FileSystemComponent file3 = new File("Video1.mp4");
+    public static void main(String[] args) throws InterruptedException {
+        FileSystemComponent file1 = new File("Document1.txt", 2_048);
+        FileSystemComponent file2 = new File("Photo1.jpg", 3_500_000);
+        FileSystemComponent file3 = new File("Video1.mp4", 750_000_000);
 
         Folder folder1 = new Folder("My Documents");
         folder1.addComponent(file1);
@@ -69,6 +876,33 @@ public class FileSystemApp {
         rootFolder.addComponent(folder2);
 
         rootFolder.showDetails();
+        System.out.println("Total size: " + rootFolder.getSize() + " bytes in " + rootFolder.getDescendantCount() + " items");
+
+        folder1.removeComponent(file2);
+        System.out.println("After removing Photo1.jpg: " + rootFolder.getSize() + " bytes in "
+                + rootFolder.getDescendantCount() + " items");
+
+        CompactFileTree archive = new CompactFileTree("Archive", 16);
+        int photos = archive.addFolder(archive.root(), "Photos");
+        archive.addFile(photos, "Photo2.jpg", 4_200_000);
+        archive.addFile(archive.root(), "Notes.txt", 1_024);
+        rootFolder.addComponent(archive.view(archive.root()));
+        archive.addFile(photos, "Photo3.jpg", 3_900_000);
+        rootFolder.showDetails();
+        System.out.println("With compact archive mounted: " + rootFolder.getSize() + " bytes in "
+                + rootFolder.getDescendantCount() + " items");
+
+        rootFolder.removeComponent(archive.view(archive.root()));
+        System.out.println("After unmounting the archive: " + rootFolder.getSize() + " bytes in "
+                + rootFolder.getDescendantCount() + " items");
+
+        // These build large trees, force GCs or run for seconds, so they only run on request
+        if (Arrays.asList(args).contains("--benchmark")) {
+            RollupBenchmark.run(10_000, 20, 8);
+            CompactTreeBenchmark.run(50_000, 20);
+            // At least 4 threads, so even a 1-CPU host measures contended writers
+            ConcurrentTreeBenchmark.run(Math.max(4, Runtime.getRuntime().availableProcessors()), 1_000);
+        }
     }
 }
 
@@ -76,6 +910,11 @@ public class FileSystemApp {
 Explanation:
 1. `FileSystemComponent` is the component interface that defines the `showDetails()` method for both files and folders.
 2. `File` is the leaf class that represents individual files and implements the `showDetails()` method.
-3. `Folder` is the composite class that can contain multiple files and/or folders. It implements the `showDetails()` method and manages its children components.
-4. `FileSystemApp` is the client that creates files and folders and performs operations on the entire structure.
+3. `AbstractFolder` holds the parent link and pushes size and count changes up the ancestors; subclasses choose how children and totals are stored. `Folder` is the composite class that can contain multiple files and/or folders. It implements the `showDetails()` method and manages its children components. It caches its total size and descendant count and updates them up the parent chain on every add, remove or file size change, so `getSize()` and `getDescendantCount()` are O(1).
+4. `RollupBenchmark` compares the cost of a mutation, a cached query and a full subtree walk; it only runs with `--benchmark`.
+5. `CompactFileTree` is a struct-of-arrays tree store: names live once in the interned `NameTable`, and parent/first-child/next-sibling links are `int[]` entries instead of objects and lists. Depth-first traversal follows the links without a stack, and breadth-first traversal uses a single `int[]` queue, so neither recurses. `CompactNode` is a flyweight view that presents any node as a `FileSystemComponent`; views of the same node are equal, and a compact tree's root can be mounted inside a regular `Folder` and removed again through a fresh view.
+6. `CompactTreeBenchmark` compares heap footprint and traversal time of the object tree and the compact store, and walks a 50,000-level chain that would overflow a recursive walk. It only runs when the app is started with `--benchmark`.
+7. `ConcurrentFolder` is a `Folder` for trees that are read and written from many threads. Readers iterate immutable child-array snapshots without locking. Writers copy-on-write a single array while the folder is small, and past `STRIPE_THRESHOLD` children they copy one of `STRIPES` separately locked arrays. Rollups are kept in atomics. Each rollup walks its ancestors taking their read locks hand-over-hand, while adding or removing a folder (a move) takes that folder's write lock, so a delta can never land on ancestors the subtree has just left, and writes in unrelated subtrees or trees never wait on each other. Moves are serialized with each other so two of them cannot build a cycle.
+8. `ConcurrentTreeBenchmark` measures traversal and write throughput at increasing thread counts, up to at least four, with one write per ten operations, then checks that the rollups still match a full walk. It only runs with `--benchmark`.
+9. `FileSystemApp` is the client that creates files and folders and performs operations on the entire structure.
 */
@@ -1,30 +1,88 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
 // Component Interface
 interface MenuItem {
     void showDetails();
-    double getPrice();
+
+    // Exact price in cents; combos memoize theirs until something beneath them changes
+    long getPriceCents();
+
+    default double getPrice() {
+        return getPriceCents() / 100.0;
+    }
+
+    // Combos this item is directly part of, one entry per occurrence
+    List<Combo> getParents();
+
+    static String formatCents(long cents) {
+        return String.format("%s%d.%02d", cents < 0 ? "-" : "", Math.abs(cents / 100), Math.abs(cents % 100));
+    }
+
+    // Marks every combo above this item dirty, stopping at combos that already are
+    static void invalidateParents(MenuItem item) {
+        Deque<Combo> pending = new ArrayDeque<>(item.getParents());
+        while (!pending.isEmpty()) {
+            Combo combo = pending.pop();
+            if (combo.markDirty()) {
+                pending.addAll(combo.getParents());
+            }
+        }
+    }
 }
 
 // Leaf Class
 class Dish implements MenuItem {
     private String name;
-    private double price;
+    private long priceCents;
+    private final List<Combo> parents = new ArrayList<>();
 
     public Dish(String name, double price) {
         this.name = name;
-        this.price = price;
+        this.priceCents = Math.round(price * 100);
+    }
+
+    public static Dish ofCents(String name, long priceCents) {
+        Dish dish = new Dish(name, 0);
+        dish.priceCents = priceCents;
+        return dish;
+    }
+
+    public void setPrice(double price) {
+        setPriceCents(Math.round(price * 100));
+    }
+
+    public void setPriceCents(long priceCents) {
+        if (this.priceCents != priceCents) {
+            this.priceCents = priceCents;
+            MenuItem.invalidateParents(this);
+        }
     }
 
     @Override
     public void showDetails() {
-        System.out.println("Dish: " + name + " - Price: $" + price);
+        System.out.println("Dish: " + name + " - Price: $" + MenuItem.formatCents(priceCents));
     }
 
     @Override
-    public double getPrice() {
-        return price;
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    @Override
+    public List<Combo> getParents() {
+        return parents;
     }
 }
 
@@ -32,17 +90,79 @@ class Dish implements MenuItem {
 class Combo implements MenuItem {
     private String name;
     private List<MenuItem> items = new ArrayList<>();
+    private final List<Combo> parents = new ArrayList<>();
+    // Memoized subtree price; a dirty combo's ancestors are always dirty too
+    private long cachedPriceCents;
+    private boolean dirty = true;
 
     public Combo(String name) {
         this.name = name;
     }
 
     public void addItem(MenuItem item) {
+        if (item == this || (item instanceof Combo && isWithin((Combo) item))) {
+            throw new IllegalArgumentException("Combo " + name + " cannot contain itself");
+        }
         items.add(item);
+        item.getParents().add(this);
+        invalidate();
     }
 
     public void removeItem(MenuItem item) {
-        items.remove(item);
+        if (items.remove(item)) {
+            item.getParents().remove(this);
+            invalidate();
+        }
+    }
+
+    // True if this combo is somewhere beneath the given combo
+    private boolean isWithin(Combo combo) {
+        Deque<Combo> pending = new ArrayDeque<>(parents);
+        Set<Combo> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        while (!pending.isEmpty()) {
+            Combo ancestor = pending.pop();
+            if (ancestor == combo) {
+                return true;
+            }
+            if (seen.add(ancestor)) {
+                pending.addAll(ancestor.parents);
+            }
+        }
+        return false;
+    }
+
+    private void invalidate() {
+        if (markDirty()) {
+            MenuItem.invalidateParents(this);
+        }
+    }
+
+    // Returns false if the combo was already dirty, so propagation can stop here
+    boolean markDirty() {
+        if (dirty) {
+            return false;
+        }
+        dirty = true;
+        return true;
+    }
+
+    List<MenuItem> getItems() {
+        return items;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    // Used by MenuRepricer, which has already summed the children
+    void storePrice(long priceCents) {
+        cachedPriceCents = priceCents;
+        dirty = false;
+    }
+
+    @Override
+    public List<Combo> getParents() {
+        return parents;
     }
 
     @Override
@@ -51,32 +171,284 @@ class Combo implements MenuItem {
         for (MenuItem item : items) {
             item.showDetails();
         }
-        System.out.println("Total Combo Price: $" + getPrice());
+        System.out.println("Total Combo Price: $" + MenuItem.formatCents(getPriceCents()));
     }
 
     @Override
-    public double getPrice() {
-        double totalPrice = 0;
-        for (MenuItem item : items) {
-            totalPrice += item.getPrice();
+    public long getPriceCents() {
+        if (dirty) {
+            long totalPrice = 0;
+            for (MenuItem item : items) {
+                totalPrice += item.getPriceCents();
+            }
+            cachedPriceCents = totalPrice;
+            dirty = false;
+        }
+        return cachedPriceCents;
+    }
+}
+
+// Outcome of a bulk reprice: prices of the requested roots plus how much work it took
+class RepriceReport {
+    private final Map<MenuItem, Long> rootPrices;
+    private final int evaluatedCombos;
+    private final int levels;
+
+    RepriceReport(Map<MenuItem, Long> rootPrices, int evaluatedCombos, int levels) {
+        this.rootPrices = rootPrices;
+        this.evaluatedCombos = evaluatedCombos;
+        this.levels = levels;
+    }
+
+    // Only the roots passed to reprice() are reported
+    public long priceOf(MenuItem root) {
+        Long price = rootPrices.get(root);
+        if (price == null) {
+            throw new IllegalArgumentException("Item was not a root of this reprice");
+        }
+        return price;
+    }
+
+    public int getEvaluatedCombos() {
+        return evaluatedCombos;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+}
+
+// Bulk Repricer - evaluates the whole menu as one DAG, each dirty combo exactly once.
+// Combos are grouped by height (dishes and clean combos are height 0), and every combo
+// in a level depends only on lower levels, so a level's combos are priced in parallel.
+class MenuRepricer implements AutoCloseable {
+    private static final int PARALLEL_LEVEL_THRESHOLD = 256;
+    private static final int[] NO_CHILDREN = new int[0];
+
+    private final ForkJoinPool pool;
+
+    public MenuRepricer(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public RepriceReport reprice(Collection<? extends MenuItem> menu, Map<Dish, Long> newPricesCents) {
+        newPricesCents.forEach(Dish::setPriceCents);
+
+        // Discover the dirty part of the DAG; clean combos keep their cached price and are not entered.
+        // Child edges are recorded once per occurrence so repeated items are summed correctly.
+        Map<MenuItem, Integer> index = new IdentityHashMap<>();
+        List<MenuItem> nodes = new ArrayList<>();
+        List<int[]> childLists = new ArrayList<>();
+        for (MenuItem root : menu) {
+            indexOf(root, index, nodes);
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            MenuItem node = nodes.get(i);
+            int[] childIndexes = NO_CHILDREN;
+            if (node instanceof Combo && ((Combo) node).isDirty()) {
+                List<MenuItem> items = ((Combo) node).getItems();
+                childIndexes = new int[items.size()];
+                for (int c = 0; c < childIndexes.length; c++) {
+                    childIndexes[c] = indexOf(items.get(c), index, nodes);
+                }
+            }
+            childLists.add(childIndexes);
+        }
+
+        // Kahn's algorithm from the leaves up
+        int n = nodes.size();
+        int[][] children = childLists.toArray(new int[0][]);
+        int[] remaining = new int[n];
+        int[] parentCount = new int[n];
+        for (int i = 0; i < n; i++) {
+            remaining[i] = children[i].length;
+            for (int child : children[i]) {
+                parentCount[child]++;
+            }
+        }
+        int[][] parentsOf = new int[n][];
+        for (int i = 0; i < n; i++) {
+            parentsOf[i] = new int[parentCount[i]];
+        }
+        int[] filled = new int[n];
+        for (int i = 0; i < n; i++) {
+            for (int child : children[i]) {
+                parentsOf[child][filled[child]++] = i;
+            }
+        }
+
+        int[] height = new int[n];
+        int[] order = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (remaining[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int node = order[head++];
+            for (int parent : parentsOf[node]) {
+                height[parent] = Math.max(height[parent], height[node] + 1);
+                if (--remaining[parent] == 0) {
+                    order[tail++] = parent;
+                }
+            }
+        }
+
+        // Bucket nodes by height, then evaluate level by level; a level only reads lower levels
+        int maxHeight = 0;
+        for (int h : height) {
+            maxHeight = Math.max(maxHeight, h);
+        }
+        int[] levelStart = new int[maxHeight + 2];
+        for (int h : height) {
+            levelStart[h + 1]++;
+        }
+        for (int h = 0; h <= maxHeight; h++) {
+            levelStart[h + 1] += levelStart[h];
+        }
+        int[] byLevel = new int[n];
+        int[] next = Arrays.copyOf(levelStart, maxHeight + 1);
+        for (int i = 0; i < n; i++) {
+            byLevel[next[height[i]]++] = i;
+        }
+
+        long[] value = new long[n];
+        int evaluated = 0;
+        for (int node = levelStart[0]; node < levelStart[1]; node++) {
+            MenuItem item = nodes.get(byLevel[node]);
+            if (item instanceof Combo && ((Combo) item).isDirty()) {
+                ((Combo) item).storePrice(0);
+                evaluated++;
+            }
+            value[byLevel[node]] = item.getPriceCents();
+        }
+        IntConsumer evaluate = node -> {
+            long total = 0;
+            for (int child : children[node]) {
+                total += value[child];
+            }
+            value[node] = total;
+            ((Combo) nodes.get(node)).storePrice(total);
+        };
+        for (int h = 1; h <= maxHeight; h++) {
+            int[] level = Arrays.copyOfRange(byLevel, levelStart[h], levelStart[h + 1]);
+            if (level.length >= PARALLEL_LEVEL_THRESHOLD) {
+                pool.submit(() -> Arrays.stream(level).parallel().forEach(evaluate)).join();
+            } else {
+                Arrays.stream(level).forEach(evaluate);
+            }
+            evaluated += level.length;
+        }
+
+        Map<MenuItem, Long> rootPrices = new IdentityHashMap<>();
+        for (MenuItem root : menu) {
+            rootPrices.put(root, value[index.get(root)]);
+        }
+        return new RepriceReport(rootPrices, evaluated, maxHeight + 1);
+    }
+
+    private static int indexOf(MenuItem item, Map<MenuItem, Integer> index, List<MenuItem> nodes) {
+        Integer existing = index.putIfAbsent(item, nodes.size());
+        if (existing != null) {
+            return existing;
+        }
+        nodes.add(item);
+        return nodes.size() - 1;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
+
+// Benchmark - bulk DAG reprice vs. the lazy memoized pass over the same price changes
+class MenuRepricingBenchmark {
+    private static final int WARM_UP_ROUNDS = 3;
+
+    public static void run(int dishCount, int layers, int combosPerLayer, int itemsPerCombo) {
+        Random random = new Random(42);
+        List<Dish> dishes = new ArrayList<>();
+        for (int i = 0; i < dishCount; i++) {
+            dishes.add(Dish.ofCents("Dish " + i, 100 + random.nextInt(2_000)));
+        }
+        List<Combo> menu = new ArrayList<>();
+        List<Combo> previous = new ArrayList<>();
+        for (int layer = 0; layer < layers; layer++) {
+            List<Combo> current = new ArrayList<>();
+            for (int c = 0; c < combosPerLayer; c++) {
+                Combo combo = new Combo("Combo " + layer + "-" + c);
+                for (int i = 0; i < itemsPerCombo; i++) {
+                    combo.addItem(previous.isEmpty() || random.nextInt(3) == 0
+                            ? dishes.get(random.nextInt(dishCount))
+                            : previous.get(random.nextInt(previous.size())));
+                }
+                current.add(combo);
+            }
+            menu.addAll(current);
+            previous = current;
+        }
+
+        // Each round reprices every dish both ways; only the last round, after warm-up, is reported
+        try (MenuRepricer repricer = new MenuRepricer(Runtime.getRuntime().availableProcessors())) {
+            long bulkNanos = 0;
+            long lazyNanos = 0;
+            int levels = 0;
+            boolean consistent = true;
+            for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+                Map<Dish, Long> changes = new IdentityHashMap<>();
+                for (Dish dish : dishes) {
+                    changes.put(dish, dish.getPriceCents() + 1);
+                }
+                long start = System.nanoTime();
+                RepriceReport report = repricer.reprice(menu, changes);
+                bulkNanos = System.nanoTime() - start;
+                levels = report.getLevels();
+
+                long checksum = 0;
+                start = System.nanoTime();
+                for (Dish dish : dishes) {
+                    dish.setPriceCents(dish.getPriceCents() + 1);
+                }
+                for (Combo combo : menu) {
+                    checksum += combo.getPriceCents();
+                }
+                lazyNanos = System.nanoTime() - start;
+
+                Map<Dish, Long> revert = new IdentityHashMap<>();
+                for (Dish dish : dishes) {
+                    revert.put(dish, dish.getPriceCents() - 1);
+                }
+                RepriceReport reverted = repricer.reprice(menu, revert);
+                consistent &= checksum != 0;
+                for (Combo combo : menu) {
+                    consistent &= reverted.priceOf(combo) == report.priceOf(combo);
+                }
+            }
+
+            System.out.printf("%d combos over %d dishes in %d levels: bulk reprice %d ms, lazy memoized pass %d ms "
+                            + "(after %d warm-up rounds)%s%n",
+                    menu.size(), dishCount, levels, bulkNanos / 1_000_000, lazyNanos / 1_000_000, WARM_UP_ROUNDS,
+                    consistent ? "" : " (mismatch)");
         }
-        return totalPrice;
     }
 }
 
 // Client Code
 public class RestaurantMenuApp {
     public static void main(String[] args) {
-        MenuItem burger = new Dish("Burger", 5.99);
+        Dish burger = new Dish("Burger", 5.99);
         MenuItem fries = new Dish("Fries", 2.49);
-        MenuItem drink = new Dish("Soft Drink", 1.99);
+        Dish drink = new Dish("Soft Drink", 1.99);
 
         Combo lunchCombo = new Combo("Lunch Combo");
         lunchCombo.addItem(burger);
         lunchCombo.addItem(fries);
         lunchCombo.addItem(drink);
 
-        MenuItem pizza = new Dish("Pizza", 8.99);
+        Dish pizza = new Dish("Pizza", 8.99);
 
         Combo familyCombo = new Combo("Family Combo");
         familyCombo.addItem(lunchCombo);
@@ -89,13 +461,38 @@ public class RestaurantMenuApp {
         System.out.println("\n--- Combos ---");
         lunchCombo.showDetails();
         familyCombo.showDetails();
+
+        System.out.println("\n--- After Burger Price Change ---");
+        burger.setPrice(6.49);
+        familyCombo.showDetails();
+
+        System.out.println("\n--- Bulk Menu Reprice ---");
+        Combo dinnerCombo = new Combo("Dinner Combo");
+        dinnerCombo.addItem(lunchCombo);
+        dinnerCombo.addItem(drink);
+        Map<Dish, Long> newPrices = new IdentityHashMap<>();
+        newPrices.put(burger, 699L);
+        newPrices.put(pizza, 949L);
+        try (MenuRepricer repricer = new MenuRepricer(2)) {
+            RepriceReport report = repricer.reprice(List.of(familyCombo, dinnerCombo), newPrices);
+            System.out.println("Family Combo: $" + MenuItem.formatCents(report.priceOf(familyCombo))
+                    + ", Dinner Combo: $" + MenuItem.formatCents(report.priceOf(dinnerCombo))
+                    + " (" + report.getEvaluatedCombos() + " combos evaluated once each)");
+        }
+
+        // The benchmark builds a 60,000-combo menu, so it only runs on request
+        if (Arrays.asList(args).contains("--benchmark")) {
+            MenuRepricingBenchmark.run(2_000, 30, 2_000, 6);
+        }
     }
 }
 
 /**
 Explanation:
-1. `MenuItem` is the component interface that defines methods `showDetails()` and `getPrice()` for both dishes and combos.
-2. `Dish` is the leaf class that represents individual dishes and implements the `showDetails()` and `getPrice()` methods.
-3. `Combo` is the composite class that can contain multiple dishes and/or combos. It implements `showDetails()` and calculates the total price of the combo.
-4. `RestaurantMenuApp` is the client that creates dishes and combos and performs operations on the entire menu.
+1. `MenuItem` is the component interface that defines methods `showDetails()` and `getPriceCents()` for both dishes and combos. Prices are exact `long` cents, and `getPrice()` derives the dollar value.
+2. `Dish` is the leaf class that represents individual dishes and implements the `showDetails()` and `getPriceCents()` methods. Changing its price marks every combo above it dirty.
+3. `Combo` is the composite class that can contain multiple dishes and/or combos. It implements `showDetails()` and memoizes the total price of the combo. The cached price is recomputed only after `addItem`, `removeItem` or a price change beneath it has marked it dirty. Dirtiness propagates to every parent, so a combo shared by several larger combos invalidates all of them.
+4. `MenuRepricer` reprices a whole menu in bulk. It applies new dish prices, treats the menu as a DAG, and orders the dirty combos by height with Kahn's algorithm. Each combo is evaluated exactly once from its children's values, so work is linear in distinct items even when a combo like "Lunch Combo" is shared by many others. Large levels are priced in parallel on a `ForkJoinPool`, and every result is written back into the combo's memoized price.
+5. `MenuRepricingBenchmark` times the bulk reprice and the lazy memoized pass over the same 60,000-combo menu after a warm-up, and checks that both give the same prices. It only runs when the app is started with `--benchmark`.
+6. `RestaurantMenuApp` is the client that creates dishes and combos and performs operations on the entire menu.
 */